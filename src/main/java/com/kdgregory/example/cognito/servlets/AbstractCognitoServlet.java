@@ -16,54 +16,369 @@ package com.kdgregory.example.cognito.servlets;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
-import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProviderClientBuilder;
 import com.amazonaws.services.cognitoidp.model.AuthenticationResultType;
+import com.amazonaws.services.cognitoidp.model.TooManyRequestsException;
 
-import com.kdgregory.example.cognito.util.CredentialsCache;
+import com.kdgregory.example.cognito.util.Bulkhead;
+import com.kdgregory.example.cognito.util.CognitoOperationEvent;
+import com.kdgregory.example.cognito.util.JwtClaims;
+import com.kdgregory.example.cognito.util.LogRateLimiter;
+import com.kdgregory.example.cognito.util.NamedThreadFactory;
+import com.kdgregory.example.cognito.util.SessionTokens;
+import com.kdgregory.example.cognito.util.UserProfile;
 
 import net.sf.kdgcommons.lang.StringUtil;
+import net.sf.kdgcommons.lang.ThreadUtil;
 
 
 /**
  *  Base class for all servlets; provides common functionality.
+ *  <p>
+ *  Subclasses implement {@link #handleRequest}, and call {@link #processRequest}
+ *  from their <code>doGet()</code> or <code>doPost()</code>. This takes care of
+ *  retrying when Cognito throttles the request, limiting concurrent requests, and
+ *  optionally running the request asynchronously.
+ *  <p>
+ *  Each request is routed to a {@link UserPool} by the {@link UserPoolRegistry},
+ *  and the pool is passed to {@link #handleRequest}. Each pool has its own client,
+ *  caches, and bulkheads, so that tenants are isolated from each other.
+ *  <p>
+ *  Each servlet belongs to an {@link Operation} class, and each class has its own
+ *  {@link Bulkhead} (per pool): a limit on concurrent requests, with a bounded queue
+ *  for those waiting. This means that a flood of sign-ups can't prevent existing users
+ *  from being validated. Limits are set with the context parameters
+ *  <code>cognito_bulkhead_<i>OPERATION</i>_concurrency</code> and
+ *  <code>cognito_bulkhead_<i>OPERATION</i>_queue</code> (refresh has no queue), and
+ *  requests that don't fit are answered with {@link Constants.ResponseMessages#SERVER_BUSY}.
+ *  <p>
+ *  Asynchronous mode is enabled by the context parameter <code>cognito_async_enabled</code>,
+ *  and only applies to servlets that override {@link #supportsAsync} and are marked
+ *  <code>async-supported</code> in <code>web.xml</code>. In this mode the container
+ *  thread is released as soon as the request is handed to the bulkhead's thread pool,
+ *  which makes the Cognito calls, so the number of container threads doesn't have to
+ *  grow with Cognito's latency. Throttled requests are rescheduled rather than sleeping,
+ *  and requests that don't complete within <code>cognito_async_timeout</code> are
+ *  answered with {@link Constants.ResponseMessages#REQUEST_TIMEOUT}. The handler
+ *  never sees the container's request and response: it gets a {@link DetachedRequest},
+ *  copied before the request is queued, and a {@link DetachedResponse} that collects
+ *  cookies. Cookies and any request attributes that the handler set are written to
+ *  the real response and request only when the handler reports its result, so a
+ *  handler that's still running when its request times out can't touch objects
+ *  that the container has already finished with (and perhaps reused).
+ *  <p>
+ *  Each request records a {@link CognitoOperationEvent} for Flight Recorder, and
+ *  the Cognito client records a {@link com.kdgregory.example.cognito.util.CognitoCallEvent}
+ *  for each call that it makes.
+ *  <p>
+ *  Session mode is enabled by the context parameter <code>session_keys</code> (see
+ *  {@link SessionTokens} for format). In this mode, whenever the credential cookies
+ *  are updated the servlet also issues a signed session cookie that identifies the
+ *  user, valid for <code>session_lifetime</code> milliseconds. Any node that shares
+ *  the keys can validate this cookie without going to its caches or Cognito. The
+ *  cookie is bound to the user pool that issued it.
  */
 public abstract class AbstractCognitoServlet
 extends HttpServlet
 {
     private static final long serialVersionUID = 1L;
 
+    // how long to wait before retrying a request that Cognito throttled
+    private static final long THROTTLE_DELAY = 250;
+
+    // warnings that happen on every request when we're overloaded are limited to one
+    // per this interval, so that logging doesn't add to the load
+    private static final long OVERLOAD_LOG_INTERVAL = 10000;
+
+    // defaults overridden by context params
+    private static final int DEFAULT_ASYNC_TIMEOUT = 10000;
+
+
+    /**
+     *  The classes of operation that are isolated from each other, along with their
+     *  default concurrency and queue limits.
+     *  <p>
+     *  Refresh has no queue: it happens while the request holds a validation permit,
+     *  so it's entered with {@link #tryEnter} rather than waiting.
+     */
+    protected enum Operation
+    {
+        VALIDATION(32, 256),
+        SIGNIN(16, 64),
+        SIGNUP(8, 32),
+        REFRESH(8);
+
+        final int defaultConcurrency;
+        final int defaultQueue;
+        final boolean queued;
+
+        private Operation(int defaultConcurrency, int defaultQueue)
+        {
+            this.defaultConcurrency = defaultConcurrency;
+            this.defaultQueue = defaultQueue;
+            this.queued = true;
+        }
+
+        private Operation(int defaultConcurrency)
+        {
+            this.defaultConcurrency = defaultConcurrency;
+            this.defaultQueue = 0;
+            this.queued = false;
+        }
+    }
+
+
     protected Logger logger = LoggerFactory.getLogger(getClass());
-    protected AWSCognitoIdentityProvider cognitoClient = AWSCognitoIdentityProviderClientBuilder.defaultClient();
 
-    // credentials cache is static so that all validating servlets can check it
-    protected static CredentialsCache tokenCache = new CredentialsCache(10000);
+    // the retry scheduler is shared by all servlets; it's created by the first servlet
+    // to be initialized and shut down by the last
+    private static ScheduledExecutorService retryScheduler;
+    private static int servletCount;
+
+    // the registry is normally created by StartupListener; if that listener isn't
+    // configured, the first servlet creates it and the last shuts it down
+    private static boolean ownsRegistry;
+
+    // these are shared, as overload affects all servlets
+    private static LogRateLimiter throttleLogLimiter = new LogRateLimiter(OVERLOAD_LOG_INTERVAL);
+    private static LogRateLimiter rejectionLogLimiter = new LogRateLimiter(OVERLOAD_LOG_INTERVAL);
+    private static LogRateLimiter timeoutLogLimiter = new LogRateLimiter(OVERLOAD_LOG_INTERVAL);
+
+    // identifies the operation (if any) that's running on the current thread
+    private static ThreadLocal<AsyncOperation> currentOperation = new ThreadLocal<AsyncOperation>();
+
+    // and the Flight Recorder event for a synchronous request
+    private static ThreadLocal<CognitoOperationEvent> currentEvent = new ThreadLocal<CognitoOperationEvent>();
+
+    // the bulkheads that the current request has entered, on this or a previous attempt
+    private static ThreadLocal<Set<Bulkhead>> currentBulkheads = new ThreadLocal<Set<Bulkhead>>();
+
+    private UserPoolRegistry registry;
+    private String cookiePath;
+    private boolean asyncEnabled;
+    private long asyncTimeout;
+
+
+    @Override
+    public void init() throws ServletException
+    {
+        // cookies must be sent to every servlet in the app, however it's routed
+        String contextPath = getServletContext().getContextPath();
+        cookiePath = StringUtil.isBlank(contextPath) ? "/" : contextPath;
+
+        asyncEnabled = supportsAsync()
+                    && Boolean.parseBoolean(getServletContext().getInitParameter("cognito_async_enabled"));
+        asyncTimeout = ContextParams.intParam(getServletContext(), DEFAULT_ASYNC_TIMEOUT, "cognito_async_timeout");
+
+        synchronized (AbstractCognitoServlet.class)
+        {
+            registry = (UserPoolRegistry)getServletContext().getAttribute(Constants.ContextAttributes.POOL_REGISTRY);
+            if (registry == null)
+            {
+                registry = new UserPoolRegistry(getServletContext());
+                getServletContext().setAttribute(Constants.ContextAttributes.POOL_REGISTRY, registry);
+                registry.startUsernameLoaders();
+                ownsRegistry = true;
+            }
+
+            if (servletCount++ == 0)
+            {
+                retryScheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("cognito-retry"));
+            }
+        }
+    }
+
+
+    @Override
+    public void destroy()
+    {
+        synchronized (AbstractCognitoServlet.class)
+        {
+            if (--servletCount == 0)
+            {
+                retryScheduler.shutdownNow();
+                if (ownsRegistry)
+                {
+                    registry.shutdown();
+                    getServletContext().removeAttribute(Constants.ContextAttributes.POOL_REGISTRY);
+                    ownsRegistry = false;
+                }
+            }
+        }
+    }
 
 
     /**
-     *  Returns the Cognito pool ID, defined in the servlet context.
+     *  Subclasses implement this to identify the class of operation that they perform,
+     *  which determines the bulkhead that limits them.
      */
-    protected String cognitoPoolId()
+    protected abstract Operation operation();
+
+
+    /**
+     *  Subclasses override to return true if they can be run asynchronously. The
+     *  default is false.
+     */
+    protected boolean supportsAsync()
     {
-        return getServletContext().getInitParameter("cognito_pool_id");
+        return false;
     }
 
 
     /**
-     *  Returns the Cognito client ID, defined in the servlet context.
+     *  Subclasses implement this to do the actual work of the request, using the
+     *  client, IDs, and caches of the passed pool. It may be called on either a
+     *  container thread or a pool thread, and may be called multiple times for the
+     *  same request if Cognito throttles it; it should let
+     *  <code>TooManyRequestsException</code> propagate.
+     *  <p>
+     *  On a pool thread, the request and response are detached stand-ins: the handler
+     *  may read parameters, cookies, and attributes, set attributes, add cookies, and
+     *  call {@link #reportResult}, but nothing else.
+     */
+    protected abstract void handleRequest(UserPool pool, HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException;
+
+
+    /**
+     *  Subclasses override this to answer a request without calling Cognito, so that
+     *  it doesn't take a bulkhead permit. It's called on the container thread before
+     *  the request enters its bulkhead, so must be quick. Returns the response message
+     *  if the request has been answered, null to continue with {@link #handleRequest}.
+     *  The default implementation returns null.
      */
-    protected String cognitoClientId()
+    protected String answerLocally(UserPool pool, HttpServletRequest request)
     {
-        return getServletContext().getInitParameter("cognito_client_id");
+        return null;
+    }
+
+
+    /**
+     *  Runs {@link #handleRequest}, either on the current thread or asynchronously,
+     *  retrying if Cognito throttles the request. Rejects the request if its bulkhead
+     *  is full. Requests answered by {@link #answerLocally} don't enter the bulkhead.
+     */
+    protected void processRequest(HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException
+    {
+        UserPool pool = registry.resolve(request);
+        String localResult = answerLocally(pool, request);
+        if (localResult != null)
+        {
+            writeResult(response, localResult);
+            return;
+        }
+
+        Bulkhead bulkhead = pool.bulkhead(operation());
+        CognitoOperationEvent event = new CognitoOperationEvent(pool.getName(), operation().name());
+        event.begin();
+
+        if (asyncEnabled && request.isAsyncSupported())
+        {
+            DetachedRequest detachedRequest = new DetachedRequest(request);
+            AsyncOperation op = new AsyncOperation(request.startAsync(request, response), detachedRequest, pool, bulkhead, event);
+            op.submit(0);
+            return;
+        }
+
+        Set<Bulkhead> enteredBulkheads = new HashSet<Bulkhead>();
+        enteredBulkheads.add(bulkhead);
+        currentEvent.set(event);
+        currentBulkheads.set(enteredBulkheads);
+        try
+        {
+            if (! bulkhead.enter())
+            {
+                reportRejection(response, bulkhead);
+                return;
+            }
+
+            try
+            {
+                while (true)
+                {
+                    try
+                    {
+                        handleRequest(pool, request, response);
+                        return;
+                    }
+                    catch (TooManyRequestsException ex)
+                    {
+                        long suppressed = throttleLogLimiter.tryAcquire();
+                        if (suppressed >= 0)
+                            logger.warn("caught TooManyRequestsException, delaying then retrying ({} similar messages suppressed)", suppressed);
+                        event.retried();
+                        ThreadUtil.sleepQuietly(THROTTLE_DELAY);
+                    }
+                }
+            }
+            finally
+            {
+                bulkhead.exit();
+            }
+        }
+        finally
+        {
+            currentBulkheads.remove();
+            currentEvent.remove();
+            event.complete();
+        }
+    }
+
+
+    /**
+     *  Called by a handler to enter a bulkhead other than its own, without waiting.
+     *  Returns true if the handler may proceed (and must then call <code>exit()</code>).
+     *  <p>
+     *  If the request entered the same bulkhead on a previous attempt (before Cognito
+     *  throttled it), this is a retry, and isn't counted again.
+     */
+    protected boolean tryEnter(Bulkhead bulkhead)
+    {
+        Set<Bulkhead> enteredBulkheads = currentBulkheads.get();
+        boolean retry = (enteredBulkheads != null) && ! enteredBulkheads.add(bulkhead);
+        return bulkhead.tryEnter(retry);
+    }
+
+
+    /**
+     *  Reports that a request was rejected by its bulkhead.
+     */
+    protected void reportRejection(HttpServletResponse response, Bulkhead bulkhead)
+    throws ServletException, IOException
+    {
+        logRejection(bulkhead);
+        reportResult(response, Constants.ResponseMessages.SERVER_BUSY);
+    }
+
+
+    private void logRejection(Bulkhead bulkhead)
+    {
+        long suppressed = rejectionLogLimiter.tryAcquire();
+        if (suppressed >= 0)
+            logger.warn("request rejected by bulkhead: {} ({} similar messages suppressed)", bulkhead, suppressed);
     }
 
 
@@ -72,29 +387,101 @@ extends HttpServlet
      *  Note that refresh token is optional -- on a refresh, we just get a new
      *  access token.
      *  <p>
-     *  Note: also updates the token cache.
+     *  Note: also updates the pool's token cache, and issues a session cookie if enabled.
+     *  Cookies are named for the pool, and scoped to the whole application.
      */
-    protected void updateCredentialCookies(HttpServletResponse response, AuthenticationResultType authResult)
+    protected void updateCredentialCookies(UserPool pool, HttpServletResponse response, AuthenticationResultType authResult)
     {
-        tokenCache.addToken(authResult.getAccessToken());
+        pool.getTokenCache().addToken(authResult.getAccessToken());
+
+        // the access token was just returned by Cognito, so we can trust its claims
+        String sub = JwtClaims.getClaim(authResult.getAccessToken(), UserProfile.SUB);
+        if (sub != null)
+        {
+            updateSessionCookie(pool, response, sub);
+        }
 
-        Cookie accessTokenCookie = new Cookie(Constants.CookieNames.ACCESS_TOKEN, authResult.getAccessToken());
+        Cookie accessTokenCookie = createCookie(pool, Constants.CookieNames.ACCESS_TOKEN, authResult.getAccessToken());
         response.addCookie(accessTokenCookie);
 
         if (!StringUtil.isBlank(authResult.getRefreshToken()))
         {
-            Cookie refreshTokenCookie = new Cookie(Constants.CookieNames.REFRESH_TOKEN, authResult.getRefreshToken());
+            Cookie refreshTokenCookie = createCookie(pool, Constants.CookieNames.REFRESH_TOKEN, authResult.getRefreshToken());
             response.addCookie(refreshTokenCookie);
         }
     }
 
 
+    /**
+     *  Issues a new session cookie for the specified user and pool. Does nothing if
+     *  session mode isn't enabled.
+     */
+    protected void updateSessionCookie(UserPool pool, HttpServletResponse response, String userId)
+    {
+        String sessionToken = pool.createSessionToken(userId);
+        if (sessionToken == null)
+            return;
+
+        Cookie sessionCookie = createCookie(pool, Constants.CookieNames.SESSION, sessionToken);
+        sessionCookie.setHttpOnly(true);
+        response.addCookie(sessionCookie);
+    }
+
+
+    /**
+     *  Creates a cookie with the pool's version of the passed name, scoped to the
+     *  application's context path.
+     */
+    private Cookie createCookie(UserPool pool, String baseName, String value)
+    {
+        Cookie cookie = new Cookie(pool.cookieName(baseName), value);
+        cookie.setPath(cookiePath);
+        return cookie;
+    }
+
+
+    /**
+     *  Validates the passed session cookie value, returning the user ID that it holds.
+     *  Returns null if session mode isn't enabled, the value is missing, invalid, or
+     *  expired, or the cookie was issued for a different pool.
+     */
+    protected String validateSessionCookie(UserPool pool, String value)
+    {
+        return pool.validateSessionToken(value);
+    }
+
+
     /**
      *  Writes the response message. All responses use status code 200; the client must
      *  look at the message to determine its action.
+     *  <p>
+     *  For an asynchronous request, this also completes the request, adding any cookies
+     *  that the handler set. If the request has already been completed (because it
+     *  timed out), the message and cookies are discarded.
      */
     protected void reportResult(HttpServletResponse response, String responseMessage)
     throws ServletException, IOException
+    {
+        CognitoOperationEvent event = currentEvent.get();
+        if (event != null)
+        {
+            event.setOutcome(responseMessage);
+        }
+
+        AsyncOperation op = currentOperation.get();
+        if (op == null)
+        {
+            writeResult(response, responseMessage);
+        }
+        else
+        {
+            op.reportResult(responseMessage);
+        }
+    }
+
+
+    private static void writeResult(HttpServletResponse response, String responseMessage)
+    throws IOException
     {
         response.setStatus(HttpServletResponse.SC_OK);
         response.setContentType("text/plain");
@@ -104,4 +491,213 @@ extends HttpServlet
         }
     }
 
+
+    /**
+     *  Manages a single asynchronous request. The request can be finished by the
+     *  pool thread that runs it, or by the container on timeout or error; whichever
+     *  gets there first writes the response, and the other is ignored. The pool
+     *  thread only touches the container's response after winning that race.
+     */
+    private class AsyncOperation
+    implements Runnable, AsyncListener
+    {
+        private AsyncContext asyncContext;
+        private DetachedRequest request;
+        private UserPool pool;
+        private Bulkhead bulkhead;
+        private CognitoOperationEvent operationEvent;
+        private AtomicBoolean finished = new AtomicBoolean();
+
+        // each attempt runs on a thread handed the operation by an executor, which
+        // makes the previous attempt's changes visible, so this needn't be synchronized
+        private Set<Bulkhead> enteredBulkheads = new HashSet<Bulkhead>();
+
+        // the stand-in for the current attempt; only accessed by the pool thread
+        private DetachedResponse response;
+
+        public AsyncOperation(AsyncContext asyncContext, DetachedRequest request, UserPool pool, Bulkhead bulkhead, CognitoOperationEvent operationEvent)
+        {
+            this.asyncContext = asyncContext;
+            this.request = request;
+            this.pool = pool;
+            this.bulkhead = bulkhead;
+            this.operationEvent = operationEvent;
+            asyncContext.setTimeout(asyncTimeout);
+            asyncContext.addListener(this);
+        }
+
+
+        /**
+         *  Submits this operation to its bulkhead for execution, after an optional delay.
+         */
+        public void submit(long delay)
+        {
+            if (delay > 0)
+            {
+                try
+                {
+                    retryScheduler.schedule(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            submit(0);
+                        }
+                    }, delay, TimeUnit.MILLISECONDS);
+                }
+                catch (RejectedExecutionException ex)
+                {
+                    logger.warn("unable to reschedule asynchronous request: shutting down");
+                    complete(Constants.ResponseMessages.SERVER_BUSY, Collections.<String,Object>emptyMap(), Collections.<Cookie>emptyList());
+                }
+            }
+            else if (! bulkhead.execute(this, ! enteredBulkheads.add(bulkhead)))
+            {
+                logRejection(bulkhead);
+                complete(Constants.ResponseMessages.SERVER_BUSY, Collections.<String,Object>emptyMap(), Collections.<Cookie>emptyList());
+            }
+        }
+
+
+        /**
+         *  Called by the handler (via {@link AbstractCognitoServlet#reportResult}) to
+         *  complete the request with the attributes and cookies that it set.
+         */
+        public void reportResult(String responseMessage)
+        {
+            complete(responseMessage, request.getChangedAttributes(), response.getCookies());
+        }
+
+
+        /**
+         *  Applies the attributes to the real request, writes the cookies and response
+         *  message, and completes the request, if it hasn't already been completed.
+         */
+        private void complete(String responseMessage, Map<String,Object> attributes, List<Cookie> cookies)
+        {
+            if (! finished.compareAndSet(false, true))
+                return;
+
+            operationEvent.setOutcome(responseMessage);
+            try
+            {
+                HttpServletRequest realRequest = (HttpServletRequest)asyncContext.getRequest();
+                for (Map.Entry<String,Object> attribute : attributes.entrySet())
+                {
+                    if (attribute.getValue() == null)
+                        realRequest.removeAttribute(attribute.getKey());
+                    else
+                        realRequest.setAttribute(attribute.getKey(), attribute.getValue());
+                }
+
+                HttpServletResponse realResponse = (HttpServletResponse)asyncContext.getResponse();
+                for (Cookie cookie : cookies)
+                {
+                    realResponse.addCookie(cookie);
+                }
+                writeResult(realResponse, responseMessage);
+            }
+            catch (Exception ex)
+            {
+                logger.warn("unable to write response: {}", ex.getMessage());
+            }
+            finally
+            {
+                asyncContext.complete();
+            }
+        }
+
+
+        @Override
+        public void run()
+        {
+            if (finished.get())
+                return;
+
+            // each attempt starts with a fresh response, so that a throttled attempt
+            // doesn't leave cookies behind
+            response = new DetachedResponse();
+            currentOperation.set(this);
+            currentBulkheads.set(enteredBulkheads);
+            try
+            {
+                handleRequest(pool, request, response);
+
+                // handlers always report a result, but just in case one doesn't
+                if (finished.compareAndSet(false, true))
+                {
+                    asyncContext.complete();
+                }
+            }
+            catch (TooManyRequestsException ex)
+            {
+                long suppressed = throttleLogLimiter.tryAcquire();
+                if (suppressed >= 0)
+                    logger.warn("caught TooManyRequestsException, rescheduling ({} similar messages suppressed)", suppressed);
+                operationEvent.retried();
+                submit(THROTTLE_DELAY);
+            }
+            catch (Exception ex)
+            {
+                logger.error("exception during asynchronous request", ex);
+                if (finished.compareAndSet(false, true))
+                {
+                    operationEvent.setOutcome(ex.getClass().getSimpleName());
+                    try
+                    {
+                        ((HttpServletResponse)asyncContext.getResponse()).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    }
+                    catch (IOException ignored)
+                    {
+                        // nothing we can do at this point
+                    }
+                    asyncContext.complete();
+                }
+            }
+            finally
+            {
+                currentBulkheads.remove();
+                currentOperation.remove();
+            }
+        }
+
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException
+        {
+            long suppressed = timeoutLogLimiter.tryAcquire();
+            if (suppressed >= 0)
+                logger.warn("asynchronous request timed out ({} similar messages suppressed)", suppressed);
+            complete(Constants.ResponseMessages.REQUEST_TIMEOUT, Collections.<String,Object>emptyMap(), Collections.<Cookie>emptyList());
+        }
+
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException
+        {
+            logger.warn("error during asynchronous request: {}", String.valueOf(event.getThrowable()));
+            if (finished.compareAndSet(false, true))
+            {
+                operationEvent.setOutcome(String.valueOf(event.getThrowable()));
+                asyncContext.complete();
+            }
+        }
+
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException
+        {
+            // this is called however the request was completed, so is the one place
+            // to record the Flight Recorder event
+            finished.set(true);
+            operationEvent.complete();
+        }
+
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException
+        {
+            // not called, since we don't restart async processing
+        }
+    }
 }
@@ -25,7 +25,6 @@ import javax.servlet.http.HttpServletResponse;
 import com.amazonaws.services.cognitoidp.model.*;
 
 import net.sf.kdgcommons.lang.StringUtil;
-import net.sf.kdgcommons.lang.ThreadUtil;
 
 
 /**
@@ -40,6 +39,28 @@ public class ConfirmSignUp extends AbstractCognitoServlet
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
     throws ServletException, IOException
+    {
+        processRequest(request, response);
+    }
+
+
+    @Override
+    protected boolean supportsAsync()
+    {
+        return true;
+    }
+
+
+    @Override
+    protected Operation operation()
+    {
+        return Operation.SIGNUP;
+    }
+
+
+    @Override
+    protected void handleRequest(UserPool pool, HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException
     {
         String emailAddress = request.getParameter(Constants.RequestParameters.EMAIL);
         String tempPassword = request.getParameter(Constants.RequestParameters.TEMPORARY_PASSWORD);
@@ -64,10 +85,10 @@ public class ConfirmSignUp extends AbstractCognitoServlet
             AdminInitiateAuthRequest initialRequest = new AdminInitiateAuthRequest()
                     .withAuthFlow(AuthFlowType.ADMIN_NO_SRP_AUTH)
                     .withAuthParameters(initialParams)
-                    .withClientId(cognitoClientId())
-                    .withUserPoolId(cognitoPoolId());
+                    .withClientId(pool.getClientId())
+                    .withUserPoolId(pool.getPoolId());
 
-            AdminInitiateAuthResult initialResponse = cognitoClient.adminInitiateAuth(initialRequest);
+            AdminInitiateAuthResult initialResponse = pool.getClient().adminInitiateAuth(initialRequest);
             if (! ChallengeNameType.NEW_PASSWORD_REQUIRED.name().equals(initialResponse.getChallengeName()))
             {
                 throw new RuntimeException("unexpected challenge: " + initialResponse.getChallengeName());
@@ -81,14 +102,14 @@ public class ConfirmSignUp extends AbstractCognitoServlet
             AdminRespondToAuthChallengeRequest finalRequest = new AdminRespondToAuthChallengeRequest()
                     .withChallengeName(ChallengeNameType.NEW_PASSWORD_REQUIRED)
                     .withChallengeResponses(challengeResponses)
-                    .withClientId(cognitoClientId())
-                    .withUserPoolId(cognitoPoolId())
+                    .withClientId(pool.getClientId())
+                    .withUserPoolId(pool.getPoolId())
                     .withSession(initialResponse.getSession());
 
-            AdminRespondToAuthChallengeResult challengeResponse = cognitoClient.adminRespondToAuthChallenge(finalRequest);
+            AdminRespondToAuthChallengeResult challengeResponse = pool.getClient().adminRespondToAuthChallenge(finalRequest);
             if (StringUtil.isBlank(challengeResponse.getChallengeName()))
             {
-                updateCredentialCookies(response, challengeResponse.getAuthenticationResult());
+                updateCredentialCookies(pool, response, challengeResponse.getAuthenticationResult());
                 reportResult(response, Constants.ResponseMessages.LOGGED_IN);
             }
             else
@@ -111,12 +132,6 @@ public class ConfirmSignUp extends AbstractCognitoServlet
             logger.debug("invalid credentials: {}", emailAddress);
             reportResult(response, Constants.ResponseMessages.NO_SUCH_USER);
         }
-        catch (TooManyRequestsException ex)
-        {
-            logger.warn("caught TooManyRequestsException, delaying then retrying");
-            ThreadUtil.sleepQuietly(250);
-            doPost(request, response);
-        }
     }
 
 
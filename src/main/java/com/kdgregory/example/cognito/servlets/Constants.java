@@ -75,15 +75,75 @@ public abstract class Constants
          *  Returned when user submits a permanent password that doesn't meet criteria.
          */
         public final static String INVALID_PASSWORD = "INVALID_PASSWORD";
+
+        /**
+         *  The request could not be completed in time (asynchronous mode only); the
+         *  client may retry.
+         */
+        public final static String REQUEST_TIMEOUT = "REQUEST_TIMEOUT";
+
+        /**
+         *  The server has too many requests of this type in progress to accept another;
+         *  the client may retry after a delay.
+         */
+        public final static String SERVER_BUSY = "SERVER_BUSY";
+
+        /**
+         *  Returned by the readiness check when startup has completed successfully.
+         */
+        public final static String READY = "READY";
+
+        /**
+         *  Returned by the readiness check when startup is in progress or has failed.
+         */
+        public final static String NOT_READY = "NOT_READY";
     }
 
 
     /**
-     *  Names of the cookies used to store credentials.
+     *  Names of the cookies used to store credentials. These are the names used by
+     *  the default pool; see {@link UserPool#cookieName}.
      */
     public abstract class CookieNames
     {
         public final static String  ACCESS_TOKEN = "ACCESS_TOKEN";
         public final static String  REFRESH_TOKEN = "REFRESH_TOKEN";
+        public final static String  SESSION = "SESSION";
+    }
+
+
+    /**
+     *  Names of request attributes set by the servlets for use by downstream code.
+     */
+    public abstract class RequestAttributes
+    {
+        /**
+         *  The {@link com.kdgregory.example.cognito.util.UserProfile} of a validated user.
+         */
+        public final static String  USER_PROFILE = "com.kdgregory.example.cognito.USER_PROFILE";
+
+        /**
+         *  The Cognito <code>sub</code> (unique identifier) of a validated user. This
+         *  is always set, even when the profile isn't available (eg, a user that was
+         *  validated by their session cookie on a node that hasn't cached the profile).
+         */
+        public final static String  USER_ID = "com.kdgregory.example.cognito.USER_ID";
+    }
+
+
+    /**
+     *  Names of servlet context attributes set by {@link StartupListener}.
+     */
+    public abstract class ContextAttributes
+    {
+        /**
+         *  The {@link UserPoolRegistry} shared by all servlets.
+         */
+        public final static String  POOL_REGISTRY = "com.kdgregory.example.cognito.POOL_REGISTRY";
+
+        /**
+         *  Boolean.TRUE once startup has completed successfully.
+         */
+        public final static String  READY = "com.kdgregory.example.cognito.READY";
     }
 }
@@ -0,0 +1,60 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.example.cognito.servlets;
+
+import javax.servlet.ServletContext;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+
+/**
+ *  Reads servlet context parameters, for the classes that are configured by them.
+ */
+class ContextParams
+{
+    /**
+     *  Returns the value of the named parameter, trimmed.
+     *
+     *  @throws IllegalArgumentException if the parameter is missing or blank.
+     */
+    public static String requiredParam(ServletContext context, String name)
+    {
+        String value = context.getInitParameter(name);
+        if (StringUtil.isBlank(value))
+        {
+            throw new IllegalArgumentException("missing context parameter: " + name);
+        }
+        return value.trim();
+    }
+
+
+    /**
+     *  Returns the value of the first of the named parameters that's defined, or the
+     *  default if none are.
+     */
+    public static int intParam(ServletContext context, int defaultValue, String... names)
+    {
+        for (String name : names)
+        {
+            String value = context.getInitParameter(name);
+            if (! StringUtil.isBlank(value))
+            {
+                return Integer.parseInt(value.trim());
+            }
+        }
+        return defaultValue;
+    }
+}
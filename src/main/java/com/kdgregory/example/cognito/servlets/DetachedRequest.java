@@ -0,0 +1,225 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.servlets;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+
+/**
+ *  A copy of the parts of a request that handlers use, taken on the container thread
+ *  before an asynchronous request is handed to a pool thread. The pool thread never
+ *  touches the container's request object, which may be recycled as soon as the
+ *  request times out.
+ *  <p>
+ *  Supports parameters, cookies, the remote address, the server name and paths, and
+ *  attributes. Attributes are copied, and any that the handler sets or removes are
+ *  held by this object until the operation completes, when they're applied to the
+ *  real request (see {@link #getChangedAttributes}). Any other method throws
+ *  <code>IllegalStateException</code>.
+ */
+class DetachedRequest
+extends HttpServletRequestWrapper
+{
+    private Map<String,String[]> parameters = new HashMap<String,String[]>();
+    private Cookie[] cookies;
+    private String remoteAddr;
+    private String serverName;
+    private String contextPath;
+    private String servletPath;
+    private String pathInfo;
+    private Map<String,Object> attributes = new HashMap<String,Object>();
+
+    // attributes set (or removed, with a null value) by the handler
+    private Map<String,Object> changedAttributes = new HashMap<String,Object>();
+
+
+    public DetachedRequest(HttpServletRequest request)
+    {
+        super(unsupported(HttpServletRequest.class));
+
+        for (Map.Entry<String,String[]> entry : request.getParameterMap().entrySet())
+        {
+            parameters.put(entry.getKey(), entry.getValue().clone());
+        }
+
+        Cookie[] requestCookies = request.getCookies();
+        if (requestCookies != null)
+        {
+            cookies = new Cookie[requestCookies.length];
+            for (int ii = 0 ; ii < requestCookies.length ; ii++)
+            {
+                cookies[ii] = (Cookie)requestCookies[ii].clone();
+            }
+        }
+
+        remoteAddr = request.getRemoteAddr();
+        serverName = request.getServerName();
+        contextPath = request.getContextPath();
+        servletPath = request.getServletPath();
+        pathInfo = request.getPathInfo();
+
+        for (Enumeration<String> names = request.getAttributeNames() ; names.hasMoreElements() ; )
+        {
+            String name = names.nextElement();
+            attributes.put(name, request.getAttribute(name));
+        }
+    }
+
+
+    @Override
+    public String getParameter(String name)
+    {
+        String[] values = parameters.get(name);
+        return ((values != null) && (values.length > 0)) ? values[0] : null;
+    }
+
+
+    @Override
+    public String[] getParameterValues(String name)
+    {
+        String[] values = parameters.get(name);
+        return (values != null) ? values.clone() : null;
+    }
+
+
+    @Override
+    public Map<String,String[]> getParameterMap()
+    {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+
+    @Override
+    public Enumeration<String> getParameterNames()
+    {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+
+    @Override
+    public Cookie[] getCookies()
+    {
+        return cookies;
+    }
+
+
+    @Override
+    public String getRemoteAddr()
+    {
+        return remoteAddr;
+    }
+
+
+    @Override
+    public String getServerName()
+    {
+        return serverName;
+    }
+
+
+    @Override
+    public String getContextPath()
+    {
+        return contextPath;
+    }
+
+
+    @Override
+    public String getServletPath()
+    {
+        return servletPath;
+    }
+
+
+    @Override
+    public String getPathInfo()
+    {
+        return pathInfo;
+    }
+
+
+    @Override
+    public Object getAttribute(String name)
+    {
+        return attributes.get(name);
+    }
+
+
+    @Override
+    public Enumeration<String> getAttributeNames()
+    {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+
+    @Override
+    public void setAttribute(String name, Object value)
+    {
+        if (value == null)
+            attributes.remove(name);
+        else
+            attributes.put(name, value);
+        changedAttributes.put(name, value);
+    }
+
+
+    @Override
+    public void removeAttribute(String name)
+    {
+        attributes.remove(name);
+        changedAttributes.put(name, null);
+    }
+
+
+    /**
+     *  Returns the attributes that the handler has set since this object was created,
+     *  so that they can be applied to the real request. A null value means that the
+     *  attribute was removed.
+     */
+    public Map<String,Object> getChangedAttributes()
+    {
+        return Collections.unmodifiableMap(changedAttributes);
+    }
+
+
+    /**
+     *  Returns an implementation of the passed interface that throws on every call.
+     *  This is what the detached request and response wrap, so that a call to any
+     *  method that they don't override fails immediately rather than reaching the
+     *  container's object.
+     */
+    static <T> T unsupported(final Class<T> iface)
+    {
+        Object proxy = Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] { iface }, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object obj, Method method, Object[] args)
+            {
+                throw new IllegalStateException(method.getName() + "() is not available to an asynchronous handler");
+            }
+        });
+        return iface.cast(proxy);
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.servlets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+
+/**
+ *  Stands in for the response while an asynchronous request runs on a pool thread.
+ *  Cookies are collected, to be added to the real response when (and if) the
+ *  operation completes; the response message is passed to
+ *  {@link AbstractCognitoServlet#reportResult}. Any other method throws
+ *  <code>IllegalStateException</code>.
+ */
+class DetachedResponse
+extends HttpServletResponseWrapper
+{
+    private List<Cookie> cookies = new ArrayList<Cookie>();
+
+
+    public DetachedResponse()
+    {
+        super(DetachedRequest.unsupported(HttpServletResponse.class));
+    }
+
+
+    @Override
+    public void addCookie(Cookie cookie)
+    {
+        cookies.add(cookie);
+    }
+
+
+    /**
+     *  Returns the cookies added by the handler.
+     */
+    public List<Cookie> getCookies()
+    {
+        return cookies;
+    }
+}
@@ -0,0 +1,69 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.kdgregory.example.cognito.util.Bulkhead;
+
+
+/**
+ *  Reports the occupancy and rejection counts of each pool's operation bulkheads,
+ *  one line per bulkhead. This doesn't talk to Cognito, so it doesn't extend the
+ *  abstract servlet.
+ *  <p>
+ *  In a real application, this should be restricted to internal callers.
+ */
+public class OperationStatus extends HttpServlet
+{
+    private static final long serialVersionUID = 1L;
+
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException
+    {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/plain");
+        try (PrintWriter out = response.getWriter())
+        {
+            UserPoolRegistry registry = (UserPoolRegistry)getServletContext().getAttribute(Constants.ContextAttributes.POOL_REGISTRY);
+            if (registry == null)
+                return;
+
+            for (UserPool pool : registry.getPools())
+            {
+                for (Bulkhead bulkhead : pool.bulkheads())
+                {
+                    out.println(bulkhead);
+                }
+            }
+        }
+    }
+
+
+    @Override
+    public String getServletInfo()
+    {
+        return "Reports bulkhead status";
+    }
+
+}
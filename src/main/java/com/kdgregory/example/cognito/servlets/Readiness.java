@@ -0,0 +1,57 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+
+/**
+ *  Readiness check for load balancers and orchestrators. Unlike the other servlets,
+ *  this uses the status code to indicate its result: 200 if {@link StartupListener}
+ *  has completed successfully, 503 if not.
+ */
+public class Readiness extends HttpServlet
+{
+    private static final long serialVersionUID = 1L;
+
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException
+    {
+        boolean isReady = Boolean.TRUE.equals(getServletContext().getAttribute(Constants.ContextAttributes.READY));
+
+        response.setStatus(isReady ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setContentType("text/plain");
+        try (PrintWriter out = response.getWriter())
+        {
+            out.print(isReady ? Constants.ResponseMessages.READY : Constants.ResponseMessages.NOT_READY);
+        }
+    }
+
+
+    @Override
+    public String getServletInfo()
+    {
+        return "Reports whether the application has completed startup";
+    }
+
+}
@@ -25,7 +25,6 @@ import javax.servlet.http.HttpServletResponse;
 import com.amazonaws.services.cognitoidp.model.*;
 
 import net.sf.kdgcommons.lang.StringUtil;
-import net.sf.kdgcommons.lang.ThreadUtil;
 
 
 /**
@@ -39,6 +38,28 @@ public class SignIn extends AbstractCognitoServlet
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
     throws ServletException, IOException
+    {
+        processRequest(request, response);
+    }
+
+
+    @Override
+    protected boolean supportsAsync()
+    {
+        return true;
+    }
+
+
+    @Override
+    protected Operation operation()
+    {
+        return Operation.SIGNIN;
+    }
+
+
+    @Override
+    protected void handleRequest(UserPool pool, HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException
     {
         String emailAddress = request.getParameter(Constants.RequestParameters.EMAIL);
         String password = request.getParameter(Constants.RequestParameters.PASSWORD);
@@ -59,13 +80,13 @@ public class SignIn extends AbstractCognitoServlet
             AdminInitiateAuthRequest authRequest = new AdminInitiateAuthRequest()
                     .withAuthFlow(AuthFlowType.ADMIN_NO_SRP_AUTH)
                     .withAuthParameters(authParams)
-                    .withClientId(cognitoClientId())
-                    .withUserPoolId(cognitoPoolId());
+                    .withClientId(pool.getClientId())
+                    .withUserPoolId(pool.getPoolId());
 
-            AdminInitiateAuthResult authResponse = cognitoClient.adminInitiateAuth(authRequest);
+            AdminInitiateAuthResult authResponse = pool.getClient().adminInitiateAuth(authRequest);
             if (StringUtil.isBlank(authResponse.getChallengeName()))
             {
-                updateCredentialCookies(response, authResponse.getAuthenticationResult());
+                updateCredentialCookies(pool, response, authResponse.getAuthenticationResult());
                 reportResult(response, Constants.ResponseMessages.LOGGED_IN);
                 return;
             }
@@ -89,12 +110,6 @@ public class SignIn extends AbstractCognitoServlet
             logger.debug("invalid credentials: {}", emailAddress);
             reportResult(response, Constants.ResponseMessages.NO_SUCH_USER);
         }
-        catch (TooManyRequestsException ex)
-        {
-            logger.warn("caught TooManyRequestsException, delaying then retrying");
-            ThreadUtil.sleepQuietly(250);
-            doPost(request, response);
-        }
     }
 
 
@@ -23,11 +23,15 @@ import javax.servlet.http.HttpServletResponse;
 import com.amazonaws.services.cognitoidp.model.*;
 
 import net.sf.kdgcommons.lang.StringUtil;
-import net.sf.kdgcommons.lang.ThreadUtil;
 
 
 /**
  *  This servlet initiates the signup process for a new user.
+ *  <p>
+ *  Duplicate sign-ups are common (users retry, or forget that they've already signed
+ *  up), so we check the pool's known-username filter before calling Cognito. A hit
+ *  is answered locally, without taking a bulkhead permit; a miss may still be an
+ *  existing user, so goes to Cognito.
  */
 public class SignUp extends AbstractCognitoServlet
 {
@@ -37,20 +41,49 @@ public class SignUp extends AbstractCognitoServlet
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
     throws ServletException, IOException
+    {
+        processRequest(request, response);
+    }
+
+
+    @Override
+    protected Operation operation()
+    {
+        return Operation.SIGNUP;
+    }
+
+
+    @Override
+    protected String answerLocally(UserPool pool, HttpServletRequest request)
     {
         String emailAddress = request.getParameter(Constants.RequestParameters.EMAIL);
         if (StringUtil.isBlank(emailAddress))
         {
-            reportResult(response, Constants.ResponseMessages.INVALID_REQUEST);
-            return;
+            return Constants.ResponseMessages.INVALID_REQUEST;
+        }
+
+        if (pool.getKnownUsernames().contains(emailAddress))
+        {
+            logger.debug("user already exists (known username): {}", emailAddress);
+            return Constants.ResponseMessages.USER_ALREADY_EXISTS;
         }
 
+        return null;
+    }
+
+
+    @Override
+    protected void handleRequest(UserPool pool, HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException
+    {
+        // answerLocally() has verified that this is present
+        String emailAddress = request.getParameter(Constants.RequestParameters.EMAIL);
         logger.debug("creating user {}", emailAddress);
 
         try
         {
             AdminCreateUserRequest cognitoRequest = new AdminCreateUserRequest()
-                    .withUserPoolId(cognitoPoolId())
+                    .withUserPoolId(pool.getPoolId())
                     .withUsername(emailAddress)
                     .withUserAttributes(
                             new AttributeType()
@@ -62,20 +95,16 @@ public class SignUp extends AbstractCognitoServlet
                     .withDesiredDeliveryMediums(DeliveryMediumType.EMAIL)
                     .withForceAliasCreation(Boolean.FALSE);
 
-            cognitoClient.adminCreateUser(cognitoRequest);
+            pool.getClient().adminCreateUser(cognitoRequest);
+            pool.getKnownUsernames().add(emailAddress);
             reportResult(response, Constants.ResponseMessages.USER_CREATED);
         }
         catch (UsernameExistsException ex)
         {
             logger.debug("user already exists: {}", emailAddress);
+            pool.getKnownUsernames().add(emailAddress);
             reportResult(response, Constants.ResponseMessages.USER_ALREADY_EXISTS);
         }
-        catch (TooManyRequestsException ex)
-        {
-            logger.warn("caught TooManyRequestsException, delaying then retrying");
-            ThreadUtil.sleepQuietly(250);
-            doPost(request, response);
-        }
     }
 
 
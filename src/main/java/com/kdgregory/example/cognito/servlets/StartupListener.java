@@ -0,0 +1,226 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.servlets;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+import com.amazonaws.services.cognitoidp.model.DescribeUserPoolRequest;
+import com.amazonaws.services.cognitoidp.model.ResourceNotFoundException;
+
+import com.kdgregory.example.cognito.util.CredentialsCache;
+import com.kdgregory.example.cognito.util.UserProfile;
+import com.kdgregory.example.cognito.util.UserProfileCache;
+
+
+/**
+ *  Performs all of the work that would otherwise happen on the first requests after
+ *  a deploy, so that those requests aren't unusually slow:
+ *  <ul>
+ *  <li> Creates the {@link UserPoolRegistry} that's shared by all servlets. This
+ *       validates the Cognito configuration parameters, and creates a client for
+ *       each user pool (resolving credentials).
+ *  <li> Starts loading the known-username filters (in the background).
+ *  <li> For each user pool, calls <code>DescribeUserPool</code> from several threads,
+ *       which verifies that the pool exists and leaves open connections in the
+ *       client's connection pool.
+ *  <li> Exercises the code used to validate a request, so that it's JIT-compiled.
+ *  </ul>
+ *  When done, sets the {@link Constants.ContextAttributes#READY} context attribute,
+ *  which is reported by {@link Readiness}. If any step fails, the app remains
+ *  not-ready (rather than failing deployment) so that the failure can be seen
+ *  from outside.
+ *  <p>
+ *  The number of warmup connections and iterations are configured by the context
+ *  parameters <code>cognito_warmup_connections</code> and <code>cognito_warmup_iterations</code>.
+ */
+public class StartupListener
+implements ServletContextListener
+{
+    private static final int DEFAULT_WARMUP_CONNECTIONS = 4;
+    private static final int DEFAULT_WARMUP_ITERATIONS = 10000;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+
+    @Override
+    public void contextInitialized(ServletContextEvent event)
+    {
+        ServletContext context = event.getServletContext();
+        long start = System.currentTimeMillis();
+        logger.info("starting warmup");
+
+        try
+        {
+            UserPoolRegistry registry = new UserPoolRegistry(context);
+            context.setAttribute(Constants.ContextAttributes.POOL_REGISTRY, registry);
+
+            // this runs in the background, so doesn't delay readiness; it's started
+            // first so that a failure in the remaining steps doesn't prevent it
+            registry.startUsernameLoaders();
+
+            int numConnections = ContextParams.intParam(context, DEFAULT_WARMUP_CONNECTIONS, "cognito_warmup_connections");
+            for (UserPool pool : registry.getPools())
+            {
+                openConnections(pool.getClient(), pool.getPoolId(), numConnections);
+            }
+            warmValidation(registry, ContextParams.intParam(context, DEFAULT_WARMUP_ITERATIONS, "cognito_warmup_iterations"));
+
+            context.setAttribute(Constants.ContextAttributes.READY, Boolean.TRUE);
+            logger.info("warmup complete in {} ms", System.currentTimeMillis() - start);
+        }
+        catch (Exception ex)
+        {
+            logger.error("warmup failed; application will not report ready", ex);
+        }
+    }
+
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event)
+    {
+        ServletContext context = event.getServletContext();
+        context.removeAttribute(Constants.ContextAttributes.READY);
+
+        UserPoolRegistry registry = (UserPoolRegistry)context.getAttribute(Constants.ContextAttributes.POOL_REGISTRY);
+        if (registry != null)
+        {
+            registry.shutdown();
+            context.removeAttribute(Constants.ContextAttributes.POOL_REGISTRY);
+        }
+    }
+
+
+    /**
+     *  Makes concurrent calls to Cognito, so that the client's connection pool holds
+     *  that many open connections. Any service exception other than a nonexistent
+     *  pool is logged and ignored: it means that we were able to talk to Cognito,
+     *  even if (for example) our role doesn't allow this call.
+     */
+    private void openConnections(final AWSCognitoIdentityProvider client, final String poolId, int numConnections)
+    throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(numConnections);
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int ii = 0 ; ii < numConnections ; ii++)
+            {
+                futures.add(executor.submit(new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws Exception
+                    {
+                        return client.describeUserPool(new DescribeUserPoolRequest().withUserPoolId(poolId));
+                    }
+                }));
+            }
+
+            for (Future<Object> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException ex)
+                {
+                    if ((ex.getCause() instanceof AmazonServiceException)
+                        && ! (ex.getCause() instanceof ResourceNotFoundException))
+                    {
+                        logger.warn("warmup call to Cognito failed: {}", ex.getCause().getMessage());
+                    }
+                    else
+                    {
+                        throw ex;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     *  Exercises the code that {@link ValidatedAction} runs for a request that can be
+     *  validated without calling Cognito, so that it's JIT-compiled before the first
+     *  real request: session tokens for each pool, then the cache lookups (including
+     *  extracting the user from the token's claims) for a miss, a token-cache hit, and
+     *  a profile-cache hit.
+     *  <p>
+     *  Session tokens are stateless, so use the real pools. The caches, however, are
+     *  throwaway instances of the same size as the pools' caches: the tokens used here
+     *  are unsigned, and adding them to a real cache would let anyone who knew their
+     *  form sign in as a warmup user.
+     */
+    private void warmValidation(UserPoolRegistry registry, int iterations)
+    {
+        for (UserPool pool : registry.getPools())
+        {
+            for (int ii = 0 ; ii < iterations ; ii++)
+            {
+                pool.validateSessionToken(pool.createSessionToken("warmup-" + ii));
+            }
+        }
+
+        CredentialsCache tokenCache = new CredentialsCache(UserPool.CACHE_SIZE);
+        UserProfileCache profileCache = new UserProfileCache(UserPool.CACHE_SIZE);
+        for (int ii = 0 ; ii < iterations ; ii++)
+        {
+            String sub = "warmup-" + ii;
+            String token = warmupToken(sub);
+
+            ValidatedAction.identifyFromCaches(tokenCache, profileCache, token);
+            tokenCache.addToken(token);
+            ValidatedAction.identifyFromCaches(tokenCache, profileCache, token);
+            profileCache.addProfile(token, new UserProfile(sub, Arrays.asList(
+                                                new AttributeType().withName(UserProfile.SUB).withValue(sub))));
+            ValidatedAction.identifyFromCaches(tokenCache, profileCache, token);
+        }
+    }
+
+
+    /**
+     *  Returns a token with the same structure as a Cognito access token, but with
+     *  only a <code>sub</code> claim and no valid signature.
+     */
+    private static String warmupToken(String sub)
+    {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8));
+        String claims = encoder.encodeToString(("{\"" + UserProfile.SUB + "\":\"" + sub + "\"}").getBytes(StandardCharsets.UTF_8));
+        return header + "." + claims + ".warmup";
+    }
+}
@@ -0,0 +1,282 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.servlets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProvider;
+import com.amazonaws.services.cognitoidp.AWSCognitoIdentityProviderClientBuilder;
+import com.amazonaws.services.cognitoidp.model.ListUsersRequest;
+import com.amazonaws.services.cognitoidp.model.ListUsersResult;
+import com.amazonaws.services.cognitoidp.model.TooManyRequestsException;
+import com.amazonaws.services.cognitoidp.model.UserType;
+
+import com.kdgregory.example.cognito.servlets.AbstractCognitoServlet.Operation;
+import com.kdgregory.example.cognito.util.Bulkhead;
+import com.kdgregory.example.cognito.util.CognitoCallRecorder;
+import com.kdgregory.example.cognito.util.CredentialsCache;
+import com.kdgregory.example.cognito.util.KnownUsernames;
+import com.kdgregory.example.cognito.util.SessionTokens;
+import com.kdgregory.example.cognito.util.UserProfileCache;
+
+
+/**
+ *  Holds everything that's specific to a single Cognito user pool: its IDs, a client
+ *  for the pool's region, caches, a filter of known usernames, and a bulkhead for
+ *  each class of operation. Nothing is shared between pools, so one tenant's traffic
+ *  can't evict another's cached credentials or use up its concurrency limits.
+ *  <p>
+ *  Instances are created by {@link UserPoolRegistry}.
+ */
+public class UserPool
+{
+    static final int CACHE_SIZE = 10000;
+
+    // ListUsers returns at most 60 users per call
+    private static final int LIST_USERS_PAGE_SIZE = 60;
+
+    // how long to wait before retrying a throttled ListUsers call
+    private static final long LIST_USERS_THROTTLE_DELAY = 1000;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private String name;
+    private String poolId;
+    private String clientId;
+    private AWSCognitoIdentityProvider client;
+    private CredentialsCache tokenCache = new CredentialsCache(CACHE_SIZE);
+    private UserProfileCache profileCache = new UserProfileCache(CACHE_SIZE);
+    private KnownUsernames knownUsernames = new KnownUsernames();
+    private Map<Operation,Bulkhead> bulkheads;
+
+    // null unless session mode is enabled; shared by all pools
+    private SessionTokens sessionTokens;
+
+
+    /**
+     *  Creates an instance. The caller is responsible for validating the pool ID.
+     */
+    UserPool(String name, String poolId, String clientId, Map<Operation,Bulkhead> bulkheads, SessionTokens sessionTokens)
+    {
+        this.name = name;
+        this.poolId = poolId;
+        this.clientId = clientId;
+        this.sessionTokens = sessionTokens;
+        String region = poolId.substring(0, poolId.indexOf('_'));
+        this.bulkheads = new EnumMap<Operation,Bulkhead>(bulkheads);
+        this.client = AWSCognitoIdentityProviderClientBuilder.standard()
+                      .withRegion(region)
+                      .withRequestHandlers(new CognitoCallRecorder())
+                      .build();
+    }
+
+
+    /**
+     *  Returns the name used to identify this pool in configuration and reports.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+
+    /**
+     *  Returns the Cognito user pool ID.
+     */
+    public String getPoolId()
+    {
+        return poolId;
+    }
+
+
+    /**
+     *  Returns the Cognito client ID.
+     */
+    public String getClientId()
+    {
+        return clientId;
+    }
+
+
+    /**
+     *  Returns the name of this pool's version of the passed cookie (one of the
+     *  {@link Constants.CookieNames}). The default pool uses the base name; other
+     *  pools add their own name as a suffix, so that a browser can hold credentials
+     *  for several pools served from the same host without one overwriting another.
+     */
+    public String cookieName(String baseName)
+    {
+        return name.equals(UserPoolRegistry.DEFAULT_POOL)
+             ? baseName
+             : baseName + "_" + name;
+    }
+
+
+    /**
+     *  Returns the client used to talk to this pool.
+     */
+    public AWSCognitoIdentityProvider getClient()
+    {
+        return client;
+    }
+
+
+    /**
+     *  Returns the cache of access tokens that have been validated for this pool.
+     */
+    public CredentialsCache getTokenCache()
+    {
+        return tokenCache;
+    }
+
+
+    /**
+     *  Returns the cache of user profiles retrieved from this pool.
+     */
+    public UserProfileCache getProfileCache()
+    {
+        return profileCache;
+    }
+
+
+    /**
+     *  Returns the usernames known to exist in this pool. This is empty until
+     *  {@link #loadKnownUsernames} runs, and is updated by sign-up.
+     */
+    public KnownUsernames getKnownUsernames()
+    {
+        return knownUsernames;
+    }
+
+
+    /**
+     *  Creates a session token for the specified user, bound to this pool. Returns
+     *  null if session mode isn't enabled.
+     */
+    public String createSessionToken(String userId)
+    {
+        return (sessionTokens != null)
+             ? sessionTokens.create(name + "/" + userId)
+             : null;
+    }
+
+
+    /**
+     *  Validates the passed session token, returning the user ID that it holds.
+     *  Returns null if session mode isn't enabled, the token is missing, invalid,
+     *  or expired, or it was issued for a different pool.
+     */
+    public String validateSessionToken(String token)
+    {
+        String sessionUser = (sessionTokens != null)
+                           ? sessionTokens.validate(token)
+                           : null;
+        String prefix = name + "/";
+        return ((sessionUser != null) && sessionUser.startsWith(prefix))
+             ? sessionUser.substring(prefix.length())
+             : null;
+    }
+
+
+    /**
+     *  Adds every username in the pool to the known-username filter, one page of
+     *  <code>ListUsers</code> at a time. This is slow for a large pool, so is meant
+     *  to run on a background thread; it returns early if that thread is interrupted.
+     *  Throttled calls are retried after a delay; any other exception propagates.
+     */
+    void loadKnownUsernames()
+    {
+        logger.info("loading usernames for pool {}", this);
+        long start = System.currentTimeMillis();
+        String paginationToken = null;
+
+        try
+        {
+            do
+            {
+                ListUsersRequest request = new ListUsersRequest()
+                                           .withUserPoolId(poolId)
+                                           .withLimit(LIST_USERS_PAGE_SIZE)
+                                           .withPaginationToken(paginationToken);
+                try
+                {
+                    ListUsersResult response = client.listUsers(request);
+                    for (UserType user : response.getUsers())
+                    {
+                        knownUsernames.add(user.getUsername());
+                    }
+                    paginationToken = response.getPaginationToken();
+                }
+                catch (TooManyRequestsException ex)
+                {
+                    // paginationToken is unchanged, so we'll retry the same page
+                    Thread.sleep(LIST_USERS_THROTTLE_DELAY);
+                }
+            }
+            while ((paginationToken != null) && ! Thread.currentThread().isInterrupted());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        logger.info("loaded {} usernames for pool {} in {} ms",
+                    knownUsernames.size(), this, System.currentTimeMillis() - start);
+    }
+
+
+    /**
+     *  Returns the bulkhead that limits the specified class of operation.
+     */
+    Bulkhead bulkhead(Operation op)
+    {
+        return bulkheads.get(op);
+    }
+
+
+    /**
+     *  Returns all bulkheads, for reporting.
+     */
+    Collection<Bulkhead> bulkheads()
+    {
+        return new ArrayList<Bulkhead>(bulkheads.values());
+    }
+
+
+    /**
+     *  Shuts down the client and bulkheads.
+     */
+    void shutdown()
+    {
+        for (Bulkhead bulkhead : bulkheads.values())
+        {
+            bulkhead.shutdown();
+        }
+        client.shutdown();
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return name + " (" + poolId + ")";
+    }
+}
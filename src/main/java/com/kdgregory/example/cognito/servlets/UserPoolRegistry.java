@@ -0,0 +1,271 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.servlets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kdgregory.example.cognito.servlets.AbstractCognitoServlet.Operation;
+import com.kdgregory.example.cognito.util.Bulkhead;
+import com.kdgregory.example.cognito.util.NamedThreadFactory;
+import com.kdgregory.example.cognito.util.SessionTokens;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+
+/**
+ *  Holds the configured user pools, and picks the pool for each request.
+ *  <p>
+ *  The default pool is defined by the context parameters <code>cognito_pool_id</code>
+ *  and <code>cognito_client_id</code>. Additional pools are listed, by name, in the
+ *  parameter <code>cognito_pools</code>, and each is defined by the parameters
+ *  <code>cognito_pool_<i>NAME</i>_id</code>, <code>cognito_pool_<i>NAME</i>_client_id</code>,
+ *  and (optionally) <code>cognito_pool_<i>NAME</i>_hosts</code>, a comma-separated
+ *  list of hostnames.
+ *  <p>
+ *  Bulkhead limits are taken from <code>cognito_pool_<i>NAME</i>_bulkhead_<i>OPERATION</i>_concurrency</code>
+ *  and <code>_queue</code> if present, otherwise from the global bulkhead parameters.
+ *  <p>
+ *  A request is routed to the first of the following that matches:
+ *  <ol>
+ *  <li> The request's hostname, if listed in a pool's <code>hosts</code>.
+ *  <li> The first segment of the request's path info, if it's a pool name (so
+ *       <code>/signin/tenant1</code> is routed to pool <code>tenant1</code>).
+ *  <li> The default pool.
+ *  </ol>
+ *  Both are hash lookups. A pool other than the default can only be reached by its
+ *  hostname or path; we don't route by the access token's issuer, because that would
+ *  mean decoding the token on every request.
+ *  <p>
+ *  If the context parameter <code>session_keys</code> is set (see {@link SessionTokens}
+ *  for format), all pools share a single set of session keys, with tokens valid for
+ *  <code>session_lifetime</code> milliseconds. Each pool binds its tokens to its own
+ *  name, so a token issued by one pool isn't accepted by another.
+ *  <p>
+ *  If the context parameter <code>cognito_username_filter_enabled</code> is true,
+ *  {@link #startUsernameLoaders} fills each pool's known-username filter on a
+ *  background thread.
+ *  <p>
+ *  Instances are created by {@link StartupListener} and stored in the servlet context
+ *  attribute {@link Constants.ContextAttributes#POOL_REGISTRY}.
+ */
+public class UserPoolRegistry
+{
+    public final static String DEFAULT_POOL = "default";
+
+    private static final int DEFAULT_QUEUE_TIMEOUT = 1000;
+    private static final int DEFAULT_SESSION_LIFETIME = 5 * 60 * 1000;
+
+    // pool IDs are the region name followed by an identifier
+    private static final Pattern POOL_ID_REGEX = Pattern.compile("[a-z0-9-]+_[0-9A-Za-z]+");
+
+    // pool names appear in parameter names and URLs
+    private static final Pattern POOL_NAME_REGEX = Pattern.compile("[A-Za-z0-9-]+");
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private boolean usernameFilterEnabled;
+    private ExecutorService usernameLoader;
+
+    // null unless session mode is enabled
+    private SessionTokens sessionTokens;
+
+    private UserPool defaultPool;
+    private Map<String,UserPool> byName = new LinkedHashMap<String,UserPool>();
+    private Map<String,UserPool> byHost = new HashMap<String,UserPool>();
+
+
+    /**
+     *  Creates an instance from the servlet context parameters.
+     *
+     *  @throws IllegalArgumentException if any parameter is missing or invalid.
+     */
+    public UserPoolRegistry(ServletContext context)
+    {
+        usernameFilterEnabled = Boolean.parseBoolean(context.getInitParameter("cognito_username_filter_enabled"));
+
+        try
+        {
+            String sessionKeys = context.getInitParameter("session_keys");
+            if (! StringUtil.isBlank(sessionKeys))
+            {
+                sessionTokens = new SessionTokens(sessionKeys, ContextParams.intParam(context, DEFAULT_SESSION_LIFETIME, "session_lifetime"));
+            }
+
+            defaultPool = createPool(context, DEFAULT_POOL, "cognito_pool_id", "cognito_client_id", "cognito_");
+
+            String poolNames = context.getInitParameter("cognito_pools");
+            if (! StringUtil.isBlank(poolNames))
+            {
+                for (String name : poolNames.split(","))
+                {
+                    name = name.trim();
+                    if (! POOL_NAME_REGEX.matcher(name).matches() || byName.containsKey(name))
+                    {
+                        throw new IllegalArgumentException("invalid or duplicate pool name: " + name);
+                    }
+
+                    String prefix = "cognito_pool_" + name + "_";
+                    UserPool pool = createPool(context, name, prefix + "id", prefix + "client_id", prefix);
+
+                    String hosts = context.getInitParameter(prefix + "hosts");
+                    if (! StringUtil.isBlank(hosts))
+                    {
+                        for (String host : hosts.split(","))
+                        {
+                            byHost.put(host.trim().toLowerCase(), pool);
+                        }
+                    }
+                }
+            }
+        }
+        catch (RuntimeException ex)
+        {
+            shutdown();
+            throw ex;
+        }
+    }
+
+
+    /**
+     *  Returns the pool for the passed request. This never returns null: if no
+     *  other pool matches, returns the default pool.
+     */
+    public UserPool resolve(HttpServletRequest request)
+    {
+        if (! byHost.isEmpty())
+        {
+            String host = request.getServerName();
+            UserPool pool = (host != null) ? byHost.get(host.toLowerCase()) : null;
+            if (pool != null)
+                return pool;
+        }
+
+        String pathInfo = request.getPathInfo();
+        if ((pathInfo != null) && (pathInfo.length() > 1))
+        {
+            int end = pathInfo.indexOf('/', 1);
+            UserPool pool = byName.get((end > 0) ? pathInfo.substring(1, end) : pathInfo.substring(1));
+            if (pool != null)
+                return pool;
+        }
+
+        return defaultPool;
+    }
+
+
+    /**
+     *  Returns all pools, default first.
+     */
+    public Collection<UserPool> getPools()
+    {
+        return new ArrayList<UserPool>(byName.values());
+    }
+
+
+    /**
+     *  Starts loading each pool's known usernames, if enabled. The pools are loaded
+     *  one at a time on a single daemon thread, to limit the load on Cognito. Does
+     *  nothing if called more than once.
+     */
+    public synchronized void startUsernameLoaders()
+    {
+        if (! usernameFilterEnabled || (usernameLoader != null))
+            return;
+
+        usernameLoader = Executors.newSingleThreadExecutor(new NamedThreadFactory("cognito-username-loader"));
+
+        for (final UserPool pool : byName.values())
+        {
+            usernameLoader.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        pool.loadKnownUsernames();
+                    }
+                    catch (Exception ex)
+                    {
+                        // the filter is an optimization; without it, sign-ups go to Cognito
+                        logger.warn("unable to load usernames for pool {}: {}", pool, ex.getMessage());
+                    }
+                }
+            });
+        }
+        usernameLoader.shutdown();
+    }
+
+
+    /**
+     *  Shuts down all pools, and stops loading usernames.
+     */
+    public synchronized void shutdown()
+    {
+        if (usernameLoader != null)
+        {
+            usernameLoader.shutdownNow();
+        }
+
+        for (UserPool pool : byName.values())
+        {
+            pool.shutdown();
+        }
+    }
+
+
+    private UserPool createPool(ServletContext context, String name, String poolIdParam, String clientIdParam, String bulkheadPrefix)
+    {
+        String poolId = ContextParams.requiredParam(context, poolIdParam);
+        String clientId = ContextParams.requiredParam(context, clientIdParam);
+        if (! POOL_ID_REGEX.matcher(poolId).matches())
+        {
+            throw new IllegalArgumentException("invalid " + poolIdParam + ": " + poolId);
+        }
+
+        int queueTimeout = ContextParams.intParam(context, DEFAULT_QUEUE_TIMEOUT, "cognito_bulkhead_queue_timeout");
+        Map<Operation,Bulkhead> bulkheads = new EnumMap<Operation,Bulkhead>(Operation.class);
+        for (Operation op : Operation.values())
+        {
+            String opName = op.name().toLowerCase();
+            String poolParam = bulkheadPrefix + "bulkhead_" + opName;
+            String globalParam = "cognito_bulkhead_" + opName;
+            bulkheads.put(op, new Bulkhead(name + "-" + opName,
+                                           ContextParams.intParam(context, op.defaultConcurrency, poolParam + "_concurrency", globalParam + "_concurrency"),
+                                           op.queued ? ContextParams.intParam(context, op.defaultQueue, poolParam + "_queue", globalParam + "_queue") : 0,
+                                           queueTimeout));
+        }
+
+        UserPool pool = new UserPool(name, poolId, clientId, bulkheads, sessionTokens);
+        byName.put(name, pool);
+        return pool;
+    }
+
+
+}
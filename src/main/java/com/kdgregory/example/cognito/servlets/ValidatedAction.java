@@ -25,14 +25,33 @@ import javax.servlet.http.HttpServletResponse;
 
 import com.amazonaws.services.cognitoidp.model.*;
 
+import com.kdgregory.example.cognito.util.Bulkhead;
+import com.kdgregory.example.cognito.util.CredentialsCache;
+import com.kdgregory.example.cognito.util.JwtClaims;
+import com.kdgregory.example.cognito.util.UserProfile;
+import com.kdgregory.example.cognito.util.UserProfileCache;
+
 import net.sf.kdgcommons.lang.StringUtil;
-import net.sf.kdgcommons.lang.ThreadUtil;
 
 
 /**
  *  This servlet takes the place of some action that requires a valid user. It simply
  *  returns text indicating whether or not the user is authenticated.
  *  <p>
+ *  On successful validation, the user's profile (username and attributes, as returned
+ *  by <code>GetUser</code>) is stored in the request attribute named by
+ *  {@link Constants.RequestAttributes#USER_PROFILE}, so that a real action wouldn't
+ *  need to make its own call to Cognito. Profiles are cached along with the token.
+ *  The user's <code>sub</code> is always stored in {@link Constants.RequestAttributes#USER_ID},
+ *  but the profile is only stored if we have one: a token that was issued by sign-in
+ *  or refresh is trusted without calling <code>GetUser</code>, so its profile is only
+ *  known if it was cached for one of the user's earlier tokens.
+ *  <p>
+ *  If session mode is enabled, a valid session cookie is sufficient: the user's
+ *  profile is attached if it's in the local cache, but neither the tokens nor Cognito
+ *  are consulted. Only when the session cookie is missing or expired do we fall back
+ *  to the access and refresh tokens, and on success issue a new session cookie.
+ *  <p>
  *  In a real application, this validation logic (and associated cache) should be pushed
  *  into the abstract servlet.
  */
@@ -45,9 +64,32 @@ public class ValidatedAction extends AbstractCognitoServlet
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
     throws ServletException, IOException
+    {
+        processRequest(request, response);
+    }
+
+
+    @Override
+    protected boolean supportsAsync()
+    {
+        return true;
+    }
+
+
+    @Override
+    protected Operation operation()
+    {
+        return Operation.VALIDATION;
+    }
+
+
+    @Override
+    protected void handleRequest(UserPool pool, HttpServletRequest request, HttpServletResponse response)
+    throws ServletException, IOException
     {
         String accessToken = null;
         String refreshToken = null;
+        String sessionToken = null;
 
         logger.debug("attempting validation");
 
@@ -59,35 +101,51 @@ public class ValidatedAction extends AbstractCognitoServlet
             return;
         }
 
+        String accessTokenName = pool.cookieName(Constants.CookieNames.ACCESS_TOKEN);
+        String refreshTokenName = pool.cookieName(Constants.CookieNames.REFRESH_TOKEN);
+        String sessionName = pool.cookieName(Constants.CookieNames.SESSION);
         for (Cookie cookie : cookies)
         {
-            if (cookie.getName().equals(Constants.CookieNames.ACCESS_TOKEN))
+            if (cookie.getName().equals(accessTokenName))
                 accessToken = cookie.getValue();
-            if (cookie.getName().equals(Constants.CookieNames.REFRESH_TOKEN))
+            if (cookie.getName().equals(refreshTokenName))
                 refreshToken = cookie.getValue();
+            if (cookie.getName().equals(sessionName))
+                sessionToken = cookie.getValue();
         }
 
-        if (tokenCache.checkToken(accessToken))
+        String userId = validateSessionCookie(pool, sessionToken);
+        if (userId != null)
+        {
+            logger.debug("valid session cookie, not checking tokens");
+            setUserAttributes(request, userId, pool.getProfileCache().getBySub(userId));
+            reportResult(response, Constants.ResponseMessages.LOGGED_IN);
+            return;
+        }
+
+        Identity identity = identifyFromCaches(pool.getTokenCache(), pool.getProfileCache(), accessToken);
+        if (identity != null)
         {
             logger.debug("token was found in cache, not going to AWS");
+            updateSessionCookie(pool, response, identity.userId);
+            setUserAttributes(request, identity.userId, identity.profile);
             reportResult(response, Constants.ResponseMessages.LOGGED_IN);
             return;
         }
 
         try
         {
-            GetUserRequest authRequest = new GetUserRequest().withAccessToken(accessToken);
-            GetUserResult authResponse = cognitoClient.getUser(authRequest);
-
-            logger.debug("successful validation for {}", authResponse.getUsername());
-            tokenCache.addToken(accessToken);
+            UserProfile profile = retrieveProfile(pool, accessToken);
+            logger.debug("successful validation for {}", profile.getUsername());
+            updateSessionCookie(pool, response, profile.getSub());
+            setUserAttributes(request, profile.getSub(), profile);
             reportResult(response, Constants.ResponseMessages.LOGGED_IN);
         }
         catch (NotAuthorizedException ex)
         {
             if (ex.getErrorMessage().equals("Access Token has expired"))
             {
-                attemptRefresh(refreshToken, response);
+                attemptRefresh(pool, refreshToken, request, response);
             }
             else
             {
@@ -95,21 +153,76 @@ public class ValidatedAction extends AbstractCognitoServlet
                 reportResult(response, Constants.ResponseMessages.NOT_LOGGED_IN);
             }
         }
-        catch (TooManyRequestsException ex)
+    }
+
+
+    /**
+     *  Identifies the user holding the passed access token from the caches, without
+     *  calling Cognito. Returns null if neither cache holds the token.
+     *  <p>
+     *  The profile cache is checked first, since a hit there gives us the full profile.
+     *  Sign-in only adds the token to the token cache, however, so the first validation
+     *  after sign-in relies on that: the user ID comes from the token's claims, which
+     *  we can trust because the token came from Cognito (that's the only way that it
+     *  gets into the cache). In this case the profile is only available if it was
+     *  cached from a previous token.
+     */
+    static Identity identifyFromCaches(CredentialsCache tokenCache, UserProfileCache profileCache, String accessToken)
+    {
+        if (accessToken == null)
+            return null;
+
+        UserProfile profile = profileCache.getByToken(accessToken);
+        if (profile != null)
+            return new Identity(profile.getSub(), profile);
+
+        if (tokenCache.checkToken(accessToken))
         {
-            logger.warn("caught TooManyRequestsException, delaying then retrying");
-            ThreadUtil.sleepQuietly(250);
-            doPost(request, response);
+            String userId = JwtClaims.getClaim(accessToken, UserProfile.SUB);
+            if (userId != null)
+                return new Identity(userId, profileCache.getBySub(userId));
         }
+
+        return null;
+    }
+
+
+    /**
+     *  Calls Cognito to validate the passed access token and retrieve the associated
+     *  user profile. On success, adds the token and profile to their caches. Throws
+     *  if the token isn't valid.
+     */
+    private UserProfile retrieveProfile(UserPool pool, String accessToken)
+    {
+        GetUserRequest authRequest = new GetUserRequest().withAccessToken(accessToken);
+        GetUserResult authResponse = pool.getClient().getUser(authRequest);
+
+        UserProfile profile = new UserProfile(authResponse.getUsername(), authResponse.getUserAttributes());
+        pool.getTokenCache().addToken(accessToken);
+        pool.getProfileCache().addProfile(accessToken, profile);
+        return profile;
     }
 
 
     /**
      *  Attempts to create a new access token based on the provided refresh token.
+     *  As with sign-in, the user ID comes from the new token's claims, and the profile
+     *  is attached only if it's already cached: this makes no Cognito call after the
+     *  refresh, so a throttled call can't cause the refresh to be repeated. Refreshes
+     *  have their own bulkhead, separate from validation; if it's full, the request
+     *  is rejected rather than waiting.
      */
-    private void attemptRefresh(String refreshToken, HttpServletResponse response)
+    private void attemptRefresh(UserPool pool, String refreshToken, HttpServletRequest request, HttpServletResponse response)
     throws ServletException, IOException
     {
+        // we're already holding a permit for validation, so must not wait for this one
+        Bulkhead bulkhead = pool.bulkhead(Operation.REFRESH);
+        if (! tryEnter(bulkhead))
+        {
+            reportRejection(response, bulkhead);
+            return;
+        }
+
         try
         {
             Map<String,String> authParams = new HashMap<String,String>();
@@ -118,14 +231,16 @@ public class ValidatedAction extends AbstractCognitoServlet
             AdminInitiateAuthRequest refreshRequest = new AdminInitiateAuthRequest()
                                               .withAuthFlow(AuthFlowType.REFRESH_TOKEN)
                                               .withAuthParameters(authParams)
-                                              .withClientId(cognitoClientId())
-                                              .withUserPoolId(cognitoPoolId());
+                                              .withClientId(pool.getClientId())
+                                              .withUserPoolId(pool.getPoolId());
 
-            AdminInitiateAuthResult refreshResponse = cognitoClient.adminInitiateAuth(refreshRequest);
+            AdminInitiateAuthResult refreshResponse = pool.getClient().adminInitiateAuth(refreshRequest);
             if (StringUtil.isBlank(refreshResponse.getChallengeName()))
             {
                 logger.debug("successfully refreshed token");
-                updateCredentialCookies(response, refreshResponse.getAuthenticationResult());
+                updateCredentialCookies(pool, response, refreshResponse.getAuthenticationResult());
+                String userId = JwtClaims.getClaim(refreshResponse.getAuthenticationResult().getAccessToken(), UserProfile.SUB);
+                setUserAttributes(request, userId, pool.getProfileCache().getBySub(userId));
                 reportResult(response, Constants.ResponseMessages.LOGGED_IN);
             }
             else
@@ -136,15 +251,48 @@ public class ValidatedAction extends AbstractCognitoServlet
         }
         catch (TooManyRequestsException ex)
         {
-            logger.warn("caught TooManyRequestsException, delaying then retrying");
-            ThreadUtil.sleepQuietly(250);
-            attemptRefresh(refreshToken, response);
+            // must not be caught as a generic exception; processRequest() will retry
+            throw ex;
         }
         catch (AWSCognitoIdentityProviderException ex)
         {
             logger.debug("exception during token refresh: {}", ex.getMessage());
             reportResult(response, Constants.ResponseMessages.NOT_LOGGED_IN);
         }
+        finally
+        {
+            bulkhead.exit();
+        }
+    }
+
+
+    /**
+     *  Stores the validated user's identity in request attributes. The profile may
+     *  be null.
+     */
+    private void setUserAttributes(HttpServletRequest request, String userId, UserProfile profile)
+    {
+        request.setAttribute(Constants.RequestAttributes.USER_ID, userId);
+        if (profile != null)
+        {
+            request.setAttribute(Constants.RequestAttributes.USER_PROFILE, profile);
+        }
+    }
+
+
+    /**
+     *  A user identified from the caches. The profile may be null.
+     */
+    static class Identity
+    {
+        final String userId;
+        final UserProfile profile;
+
+        Identity(String userId, UserProfile profile)
+        {
+            this.userId = userId;
+            this.profile = profile;
+        }
     }
 
 
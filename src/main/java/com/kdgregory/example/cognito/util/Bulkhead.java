@@ -0,0 +1,339 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *  Limits the number of concurrent executions of some class of operation, so that
+ *  a flood of one type of request can't consume all of the resources needed by
+ *  another. Requests beyond the limit wait in a bounded queue; requests beyond the
+ *  queue are rejected immediately.
+ *  <p>
+ *  A bulkhead may be used in two ways:
+ *  <ul>
+ *  <li> Synchronously, by calling {@link #enter} before the operation and {@link #exit}
+ *       after it (in a <code>finally</code>). A caller that can't get a permit waits
+ *       in the queue for up to the configured timeout. A caller that must not wait
+ *       (because it already holds a permit for another bulkhead) can instead call
+ *       {@link #tryEnter}, which is rejected immediately if there's no permit.
+ *  <li> Asynchronously, by calling {@link #execute}. The operation is run on a thread
+ *       pool owned by the bulkhead, sized to its concurrency limit, with the queue
+ *       holding operations that are waiting for a thread.
+ *  </ul>
+ *  Both approaches share the same permits, so the concurrency limit holds even if
+ *  a bulkhead is used both ways.
+ *  <p>
+ *  Implementation notes:
+ *  <ul>
+ *  <li> The thread pool is created on first use, so a bulkhead that's only used
+ *       synchronously doesn't create threads.
+ *  <li> Pool threads are daemons, so a stuck operation can't prevent shutdown.
+ *  <li> Counts are approximate: they're read without locking, so may be momentarily
+ *       inconsistent with each other.
+ *  <li> Counts are per logical request: a caller that retries an operation (for
+ *       example, because it was throttled) passes <code>retry</code>, so that the
+ *       operation isn't counted as accepted again. If the retry is rejected, the
+ *       operation is moved from the accepted count to the rejected count.
+ *  </ul>
+ */
+public class Bulkhead
+{
+    private String name;
+    private int maxConcurrent;
+    private int maxQueued;
+    private long queueTimeout;
+
+    private Semaphore permits;
+    private AtomicInteger queued = new AtomicInteger();
+    private AtomicLong accepted = new AtomicLong();
+    private AtomicLong rejected = new AtomicLong();
+
+    private volatile ThreadPoolExecutor executor;
+    private volatile boolean isShutdown;
+
+
+    /**
+     *  Creates a new instance.
+     *
+     *  @param  name            Identifies this bulkhead in reports and thread names.
+     *  @param  maxConcurrent   The maximum number of operations that can execute at once.
+     *  @param  maxQueued       The maximum number of operations that can wait for a permit.
+     *  @param  queueTimeout    The number of milliseconds that a synchronous caller will
+     *                          wait for a permit.
+     */
+    public Bulkhead(String name, int maxConcurrent, int maxQueued, long queueTimeout)
+    {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.queueTimeout = queueTimeout;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+
+    /**
+     *  Acquires a permit to execute an operation, waiting if necessary and there is
+     *  space in the queue. Returns true if the caller may proceed (and must then call
+     *  {@link #exit}), false if the operation was rejected.
+     */
+    public boolean enter()
+    {
+        if (permits.tryAcquire())
+        {
+            accepted.incrementAndGet();
+            return true;
+        }
+
+        if (queued.incrementAndGet() > maxQueued)
+        {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        try
+        {
+            if (permits.tryAcquire(queueTimeout, TimeUnit.MILLISECONDS))
+            {
+                accepted.incrementAndGet();
+                return true;
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            queued.decrementAndGet();
+        }
+
+        rejected.incrementAndGet();
+        return false;
+    }
+
+
+    /**
+     *  Acquires a permit to execute an operation, without waiting. Returns true if
+     *  the caller may proceed (and must then call {@link #exit}), false if there are
+     *  no permits available.
+     */
+    public boolean tryEnter()
+    {
+        return tryEnter(false);
+    }
+
+
+    /**
+     *  Acquires a permit to execute an operation, without waiting. If <code>retry</code>
+     *  is true, this is another attempt at an operation that was already accepted, and
+     *  won't be counted again.
+     */
+    public boolean tryEnter(boolean retry)
+    {
+        if (permits.tryAcquire())
+        {
+            countAccepted(retry);
+            return true;
+        }
+
+        countRejected(retry);
+        return false;
+    }
+
+
+    /**
+     *  Releases the permit acquired by {@link #enter} or {@link #tryEnter}.
+     */
+    public void exit()
+    {
+        permits.release();
+    }
+
+
+    /**
+     *  Queues the passed operation for execution on the bulkhead's thread pool.
+     *  Returns true if the operation was accepted, false if it was rejected (either
+     *  because the queue is full or the bulkhead has been shut down).
+     */
+    public boolean execute(Runnable operation)
+    {
+        return execute(operation, false);
+    }
+
+
+    /**
+     *  Queues the passed operation for execution on the bulkhead's thread pool. If
+     *  <code>retry</code> is true, this is another attempt at an operation that was
+     *  already accepted, and won't be counted again.
+     */
+    public boolean execute(final Runnable operation, boolean retry)
+    {
+        if (isShutdown)
+        {
+            countRejected(retry);
+            return false;
+        }
+
+        try
+        {
+            getExecutor().execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    permits.acquireUninterruptibly();
+                    try
+                    {
+                        operation.run();
+                    }
+                    finally
+                    {
+                        permits.release();
+                    }
+                }
+            });
+            countAccepted(retry);
+            return true;
+        }
+        catch (RejectedExecutionException ex)
+        {
+            countRejected(retry);
+            return false;
+        }
+    }
+
+
+    /**
+     *  Shuts down the bulkhead's thread pool, if one was created. Any subsequent calls
+     *  to {@link #execute} will be rejected.
+     */
+    public synchronized void shutdown()
+    {
+        isShutdown = true;
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     *  Returns the name of this bulkhead.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+
+    /**
+     *  Returns the number of operations currently executing.
+     */
+    public int getActiveCount()
+    {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+
+    /**
+     *  Returns the number of operations currently waiting to execute.
+     */
+    public int getQueuedCount()
+    {
+        ThreadPoolExecutor exec = executor;
+        return queued.get() + ((exec != null) ? exec.getQueue().size() : 0);
+    }
+
+
+    /**
+     *  Returns the number of operations that have been accepted since the bulkhead
+     *  was created.
+     */
+    public long getAcceptedCount()
+    {
+        return accepted.get();
+    }
+
+
+    /**
+     *  Returns the number of operations that have been rejected since the bulkhead
+     *  was created.
+     */
+    public long getRejectedCount()
+    {
+        return rejected.get();
+    }
+
+
+    /**
+     *  Returns a single-line summary of the bulkhead's configuration and counts,
+     *  suitable for logging or a status page.
+     */
+    @Override
+    public String toString()
+    {
+        return name
+             + ": active=" + getActiveCount() + "/" + maxConcurrent
+             + ", queued=" + getQueuedCount() + "/" + maxQueued
+             + ", accepted=" + getAcceptedCount()
+             + ", rejected=" + getRejectedCount();
+    }
+
+
+    private void countAccepted(boolean retry)
+    {
+        if (! retry)
+        {
+            accepted.incrementAndGet();
+        }
+    }
+
+
+    private void countRejected(boolean retry)
+    {
+        if (retry)
+        {
+            accepted.decrementAndGet();
+        }
+        rejected.incrementAndGet();
+    }
+
+
+    private synchronized ThreadPoolExecutor getExecutor()
+    {
+        if (executor == null)
+        {
+            // ArrayBlockingQueue can't have zero capacity
+            BlockingQueue<Runnable> queue = (maxQueued > 0)
+                                          ? new ArrayBlockingQueue<Runnable>(maxQueued)
+                                          : new SynchronousQueue<Runnable>();
+            executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                                              queue, new NamedThreadFactory("bulkhead-" + name));
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
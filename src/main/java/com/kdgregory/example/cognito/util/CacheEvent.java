@@ -0,0 +1,75 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ *  Flight Recorder event for an operation on one of the validation caches. The
+ *  operations themselves are a few map lookups, so the default threshold means
+ *  that only those delayed by lock contention (or GC) are recorded.
+ */
+@Name("com.kdgregory.example.cognito.CacheOperation")
+@Label("Cache Operation")
+@Category({"Cognito Example"})
+@Description("A lookup or update of a validation cache")
+@StackTrace(false)
+@Threshold("1 ms")
+public class CacheEvent
+extends Event
+{
+    public final static String HIT = "hit";
+    public final static String MISS = "miss";
+    public final static String EXPIRED = "expired";
+    public final static String ADDED = "added";
+    public final static String EVICTED = "added, evicted eldest";
+
+    @Label("Cache")
+    private String cache;
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Result")
+    private String result;
+
+
+    public CacheEvent(String cache, String operation)
+    {
+        this.cache = cache;
+        this.operation = operation;
+    }
+
+
+    /**
+     *  Ends the event and records it, if it's enabled and above threshold.
+     */
+    public void complete(String result)
+    {
+        end();
+        if (shouldCommit())
+        {
+            this.result = result;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ *  Flight Recorder event for a single call to the Cognito API, as seen by the SDK.
+ *  The duration includes any retries performed by the SDK, but not those performed
+ *  by the servlets (see {@link CognitoOperationEvent}). Recorded by
+ *  {@link CognitoCallRecorder}.
+ */
+@Name("com.kdgregory.example.cognito.CognitoCall")
+@Label("Cognito Call")
+@Category({"Cognito Example"})
+@Description("A call to the Cognito API")
+@StackTrace(false)
+@Threshold("100 ms")
+public class CognitoCallEvent
+extends Event
+{
+    @Label("Operation")
+    private String operation;
+
+    @Label("Outcome")
+    @Description("\"success\", or the error code or exception class")
+    private String outcome;
+
+
+    public CognitoCallEvent(String operation)
+    {
+        this.operation = operation;
+    }
+
+
+    /**
+     *  Ends the event and records it, if it's enabled and above threshold.
+     */
+    public void complete(String outcome)
+    {
+        end();
+        if (shouldCommit())
+        {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
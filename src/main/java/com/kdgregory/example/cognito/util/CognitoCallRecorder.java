@@ -0,0 +1,86 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+
+
+/**
+ *  An SDK request handler that records a {@link CognitoCallEvent} for each call made
+ *  by the client that it's attached to.
+ *  <p>
+ *  Implementation note: the event is held in a thread-local between the before and
+ *  after callbacks. This works because the synchronous client invokes all of them on
+ *  the calling thread; it would not work with the asynchronous client.
+ */
+public class CognitoCallRecorder
+extends RequestHandler2
+{
+    private static ThreadLocal<CognitoCallEvent> currentEvent = new ThreadLocal<CognitoCallEvent>();
+
+
+    @Override
+    public void beforeRequest(Request<?> request)
+    {
+        CognitoCallEvent event = new CognitoCallEvent(operationName(request));
+        if (event.isEnabled())
+        {
+            event.begin();
+            currentEvent.set(event);
+        }
+    }
+
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response)
+    {
+        complete("success");
+    }
+
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception ex)
+    {
+        complete((ex instanceof AmazonServiceException)
+                 ? ((AmazonServiceException)ex).getErrorCode()
+                 : ex.getClass().getSimpleName());
+    }
+
+
+    private static void complete(String outcome)
+    {
+        CognitoCallEvent event = currentEvent.get();
+        if (event != null)
+        {
+            currentEvent.remove();
+            event.complete(outcome);
+        }
+    }
+
+
+    /**
+     *  Derives the operation name from the request class (eg, GetUserRequest is "GetUser").
+     */
+    private static String operationName(Request<?> request)
+    {
+        String className = request.getOriginalRequest().getClass().getSimpleName();
+        return className.endsWith("Request")
+             ? className.substring(0, className.length() - 7)
+             : className;
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/**
+ *  Flight Recorder event for a complete servlet operation: from when the request is
+ *  accepted to when its response is written. The difference between this and the
+ *  {@link CognitoCallEvent}s that it contains is time spent waiting: in a bulkhead
+ *  queue, or sleeping after Cognito throttled the request.
+ */
+@Name("com.kdgregory.example.cognito.CognitoOperation")
+@Label("Cognito Operation")
+@Category({"Cognito Example"})
+@Description("A servlet request that calls Cognito, including retries")
+@StackTrace(false)
+@Threshold("100 ms")
+public class CognitoOperationEvent
+extends Event
+{
+    @Label("User Pool")
+    private String pool;
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Outcome")
+    @Description("The response message")
+    private String outcome;
+
+    @Label("Retries")
+    @Description("Number of times the request was retried because Cognito throttled it")
+    private int retries;
+
+
+    public CognitoOperationEvent(String pool, String operation)
+    {
+        this.pool = pool;
+        this.operation = operation;
+    }
+
+
+    /**
+     *  Records the outcome of the operation. This may be called before the operation
+     *  completes; if called more than once, the first call wins.
+     */
+    public void setOutcome(String outcome)
+    {
+        if (this.outcome == null)
+        {
+            this.outcome = outcome;
+        }
+    }
+
+
+    /**
+     *  Increments the retry count.
+     */
+    public void retried()
+    {
+        retries++;
+    }
+
+
+    /**
+     *  Ends the event and records it, if it's enabled and above threshold.
+     */
+    public void complete()
+    {
+        end();
+        if (shouldCommit())
+        {
+            commit();
+        }
+    }
+}
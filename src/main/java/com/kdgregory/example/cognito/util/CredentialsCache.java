@@ -39,7 +39,8 @@ import java.util.Map.Entry;
  *       With the default 15 minute timeout, this shouldn't be an issue in practice.
  *  <li> The cache is naively syncrhonized. In normal use this should be sufficient
  *       and cause minimal contention. In high-volume use, consider replacing with
- *       a <code>ConcurrentHashMap</code> and reaper thread.
+ *       a <code>ConcurrentHashMap</code> and reaper thread. To find out whether
+ *       contention is a problem, each operation records a {@link CacheEvent}.
  *  <li> The cache is marked Serializable so that it can be used with servlets. In
  *       a production app, the actual map would be marked transient (and in practice
  *       it would never be serialized, as the servlet would never be passivated). See
@@ -54,8 +55,13 @@ implements Serializable
 
     private static final long DEFAULT_TIMEOUT = 15 * 60 * 1000L;
 
+    private static final String CACHE_NAME = "CredentialsCache";
+
     private Map<String,Date> cache;
 
+    // set by the map when it evicts an entry; only accessed while holding its lock
+    private boolean evicted;
+
 
     /**
      *  Creates a new cache, holding up to <code>maxEntries</code> entries.
@@ -69,7 +75,8 @@ implements Serializable
             @Override
             protected boolean removeEldestEntry(Entry<String,Date> eldest)
             {
-                return size() > maxEntries;
+                evicted = size() > maxEntries;
+                return evicted;
             }
         });
     }
@@ -91,7 +98,19 @@ implements Serializable
      */
     public void addToken(String accessToken, long timeoutMillis)
     {
-        cache.put(accessToken, new Date(System.currentTimeMillis() + timeoutMillis));
+        CacheEvent event = new CacheEvent(CACHE_NAME, "addToken");
+        event.begin();
+
+        boolean wasEvicted;
+        // the synchronized wrapper uses itself as its lock
+        synchronized (cache)
+        {
+            evicted = false;
+            cache.put(accessToken, new Date(System.currentTimeMillis() + timeoutMillis));
+            wasEvicted = evicted;
+        }
+
+        event.complete(wasEvicted ? CacheEvent.EVICTED : CacheEvent.ADDED);
     }
 
     /**
@@ -100,19 +119,30 @@ implements Serializable
      */
     public boolean checkToken(String accessToken)
     {
+        CacheEvent event = new CacheEvent(CACHE_NAME, "checkToken");
+        event.begin();
+
+        // the map operations each take and release the lock; the event is always
+        // committed outside it
+        String result;
+        boolean valid = false;
         Date expirationDate = cache.get(accessToken);
         if (expirationDate == null)
         {
-            return false;
+            result = CacheEvent.MISS;
         }
         else if (System.currentTimeMillis() > expirationDate.getTime())
         {
             cache.remove(accessToken);
-            return false;
+            result = CacheEvent.EXPIRED;
         }
         else
         {
-            return true;
+            result = CacheEvent.HIT;
+            valid = true;
         }
+
+        event.complete(result);
+        return valid;
     }
 }
@@ -0,0 +1,71 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ *  Extracts the claims from a JWT (such as a Cognito access token).
+ *  <p>
+ *  This does <em>not</em> verify the token's signature, so must only be used with
+ *  tokens that have just been received from Cognito, or that have been validated
+ *  by some other means.
+ */
+public class JwtClaims
+{
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+
+    /**
+     *  Returns the claims from the passed token, or an empty map if the token
+     *  can't be parsed.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String,Object> decode(String token)
+    {
+        String[] parts = (token != null) ? token.split("\\.") : new String[0];
+        if (parts.length != 3)
+        {
+            return Collections.emptyMap();
+        }
+
+        try
+        {
+            byte[] payload = Base64.getUrlDecoder().decode(parts[1]);
+            return mapper.readValue(payload, Map.class);
+        }
+        catch (IllegalArgumentException | IOException ex)
+        {
+            return Collections.emptyMap();
+        }
+    }
+
+
+    /**
+     *  Returns a single string-valued claim from the passed token, null if the token
+     *  can't be parsed or doesn't have the claim.
+     */
+    public static String getClaim(String token, String name)
+    {
+        Object value = decode(token).get(name);
+        return (value != null) ? String.valueOf(value) : null;
+    }
+}
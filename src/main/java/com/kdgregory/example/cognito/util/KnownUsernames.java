@@ -0,0 +1,187 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+
+/**
+ *  A set of usernames that are known to exist in a user pool, used to answer
+ *  duplicate sign-up attempts without calling Cognito. A positive answer from
+ *  {@link #contains} means that the user exists; a negative answer means only
+ *  that we don't know, and the caller must ask Cognito.
+ *  <p>
+ *  A Bloom filter is the usual structure for this sort of thing, but it has the
+ *  wrong kind of error: false positives, which here would tell a new user that
+ *  they already exist. Instead, this holds a 64-bit fingerprint of each username
+ *  (the first 8 bytes of its SHA-256 digest) in an open-addressed hash table.
+ *  The only source of false positives is two names with the same fingerprint:
+ *  with a million names, the chance that a given new name collides with any of
+ *  them is about 1 in 2<sup>44</sup> (10<sup>6</sup> / 2<sup>64</sup>). Using a
+ *  cryptographic hash means that an attacker can't pick a username that collides
+ *  with someone else's.
+ *  <p>
+ *  Memory: each slot is a <code>long</code>, and the table doubles when it's 3/4
+ *  full, so it's between 3/8 and 3/4 full. That's between 11 and 21 MB per million
+ *  names, peaking at 32 MB while a resize copies the table. A <code>HashSet</code>
+ *  of email addresses would take over 100 MB.
+ *  <p>
+ *  Implementation notes:
+ *  <ul>
+ *  <li> There's no removal: the set is built from the pool at startup and only
+ *       grows. A user deleted outside the application will be reported as
+ *       existing until restart.
+ *  <li> Names are not normalized: if the pool is case-insensitive, a name that
+ *       differs only in case will be a miss, and go to Cognito.
+ *  <li> Like the other caches, this is naively synchronized. The digest is computed
+ *       outside the lock, so the critical section is a few array reads.
+ *  </ul>
+ */
+public class KnownUsernames
+{
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // zero marks an empty slot, so a fingerprint of zero is stored as this
+    private static final long ZERO_FINGERPRINT = 1;
+
+    private long[] table;
+    private int size;
+
+
+    /**
+     *  Creates an empty set with default capacity.
+     */
+    public KnownUsernames()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+
+    /**
+     *  Creates an empty set that can hold the specified number of names without
+     *  resizing.
+     */
+    public KnownUsernames(int expectedSize)
+    {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize)
+        {
+            capacity *= 2;
+        }
+        table = new long[capacity];
+    }
+
+
+    /**
+     *  Returns true if the passed username is known to exist. Returns false if it
+     *  may or may not exist (or is null).
+     */
+    public boolean contains(String username)
+    {
+        if (username == null)
+            return false;
+
+        long fingerprint = fingerprint(username);
+        synchronized (this)
+        {
+            int mask = table.length - 1;
+            for (int idx = (int)fingerprint & mask ; table[idx] != 0 ; idx = (idx + 1) & mask)
+            {
+                if (table[idx] == fingerprint)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+
+    /**
+     *  Records that the passed username exists. Null is ignored.
+     */
+    public void add(String username)
+    {
+        if (username == null)
+            return;
+
+        long fingerprint = fingerprint(username);
+        synchronized (this)
+        {
+            if (insert(table, fingerprint))
+            {
+                size++;
+                if (size > table.length * 3 / 4)
+                {
+                    resize();
+                }
+            }
+        }
+    }
+
+
+    /**
+     *  Returns the number of names in the set.
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+
+    /**
+     *  Returns the fingerprint of a username: the first 8 bytes of its SHA-256 digest,
+     *  with zero replaced by a non-zero value.
+     */
+    static long fingerprint(String username)
+    {
+        byte[] bytes = Sha256.digest(username);
+        long value = 0;
+        for (int ii = 0 ; ii < 8 ; ii++)
+        {
+            value = (value << 8) | (bytes[ii] & 0xFF);
+        }
+        return (value != 0) ? value : ZERO_FINGERPRINT;
+    }
+
+
+    /**
+     *  Inserts a fingerprint into the passed table, returning false if it was
+     *  already present. The table must have at least one empty slot.
+     */
+    private static boolean insert(long[] table, long fingerprint)
+    {
+        int mask = table.length - 1;
+        int idx = (int)fingerprint & mask;
+        while (table[idx] != 0)
+        {
+            if (table[idx] == fingerprint)
+                return false;
+            idx = (idx + 1) & mask;
+        }
+        table[idx] = fingerprint;
+        return true;
+    }
+
+
+    private void resize()
+    {
+        long[] newTable = new long[table.length * 2];
+        for (long fingerprint : table)
+        {
+            if (fingerprint != 0)
+            {
+                insert(newTable, fingerprint);
+            }
+        }
+        table = newTable;
+    }
+}
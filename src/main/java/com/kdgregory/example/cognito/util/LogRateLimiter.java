@@ -0,0 +1,69 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *  Limits a repeated log message to one per interval, so that a condition that
+ *  affects every request (such as Cognito throttling) doesn't flood the log at the
+ *  point where the system is already overloaded. Each instance is intended to guard
+ *  a single message (or closely related group of messages).
+ *  <p>
+ *  Usage:
+ *  <pre>
+ *      long suppressed = limiter.tryAcquire();
+ *      if (suppressed >= 0)
+ *          logger.warn("something happened ({} similar messages suppressed)", suppressed);
+ *  </pre>
+ *  <p>
+ *  Implementation note: this is lock-free. If two threads race at the start of an
+ *  interval, only one of them wins; the other's message is counted as suppressed.
+ */
+public class LogRateLimiter
+{
+    private long intervalMillis;
+    private AtomicLong nextAllowed = new AtomicLong();
+    private AtomicLong suppressed = new AtomicLong();
+
+
+    /**
+     *  Creates an instance that allows one message per <code>intervalMillis</code>.
+     */
+    public LogRateLimiter(long intervalMillis)
+    {
+        this.intervalMillis = intervalMillis;
+    }
+
+
+    /**
+     *  Determines whether the caller should log its message. If yes, returns the number
+     *  of messages that were suppressed since the last one was logged (which may be 0).
+     *  If no, returns -1.
+     */
+    public long tryAcquire()
+    {
+        long now = System.currentTimeMillis();
+        long allowedAt = nextAllowed.get();
+        if ((now >= allowedAt) && nextAllowed.compareAndSet(allowedAt, now + intervalMillis))
+        {
+            return suppressed.getAndSet(0);
+        }
+
+        suppressed.incrementAndGet();
+        return -1;
+    }
+}
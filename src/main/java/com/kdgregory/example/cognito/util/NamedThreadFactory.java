@@ -0,0 +1,46 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.example.cognito.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ *  Creates daemon threads named with a prefix and a sequence number. Daemon threads
+ *  can't keep the container from shutting down if an operation gets stuck.
+ */
+public class NamedThreadFactory
+implements ThreadFactory
+{
+    private String prefix;
+    private AtomicInteger threadNumber = new AtomicInteger();
+
+
+    public NamedThreadFactory(String prefix)
+    {
+        this.prefix = prefix;
+    }
+
+
+    @Override
+    public Thread newThread(Runnable r)
+    {
+        Thread thread = new Thread(r, prefix + "-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
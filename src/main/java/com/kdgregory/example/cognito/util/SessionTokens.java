@@ -0,0 +1,176 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ *  Creates and validates compact, short-lived session tokens. A token identifies a
+ *  user and is signed with HMAC-SHA256 under a secret shared by all nodes, so any
+ *  node can validate it without a cache lookup or a call to Cognito.
+ *  <p>
+ *  A token has four dot-separated fields: key ID, user ID (base64url-encoded),
+ *  expiration time (milliseconds since epoch), and signature (base64url-encoded)
+ *  over the first three.
+ *  <p>
+ *  Keys are specified as a comma-separated list of <code>KEY_ID:BASE64_SECRET</code>.
+ *  The first key signs new tokens; all keys are accepted for validation. To rotate,
+ *  add the new key to the end of the list on all nodes, then move it to the front,
+ *  and finally remove the old key once all tokens signed with it have expired.
+ *  <p>
+ *  Implementation notes:
+ *  <ul>
+ *  <li> <code>Mac</code> isn't thread-safe, and <code>Mac.getInstance()</code> is
+ *       relatively expensive, so each key holds a thread-local instance.
+ *  <li> Signatures are compared with <code>MessageDigest.isEqual()</code>, which
+ *       doesn't leak the position of the first mismatch through its timing.
+ *  <li> Tokens can't be revoked: a user remains authenticated until the token
+ *       expires. Keep the lifetime short.
+ *  </ul>
+ */
+public class SessionTokens
+{
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Pattern KEY_ID_REGEX = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private long lifetime;
+    private String currentKeyId;
+    private Map<String,ThreadLocal<Mac>> macs = new LinkedHashMap<String,ThreadLocal<Mac>>();
+
+
+    /**
+     *  Creates an instance.
+     *
+     *  @param  keySpec     The signing keys, in the form described above.
+     *  @param  lifetime    The number of milliseconds that a token remains valid.
+     *
+     *  @throws IllegalArgumentException if the key specification is invalid.
+     */
+    public SessionTokens(String keySpec, long lifetime)
+    {
+        this.lifetime = lifetime;
+
+        for (String key : keySpec.split(","))
+        {
+            String[] parts = key.trim().split(":", 2);
+            if ((parts.length != 2) || ! KEY_ID_REGEX.matcher(parts[0]).matches())
+            {
+                throw new IllegalArgumentException("invalid session key: " + parts[0]);
+            }
+
+            final String keyId = parts[0];
+            final SecretKeySpec secret = new SecretKeySpec(Base64.getDecoder().decode(parts[1]), ALGORITHM);
+            createMac(secret);  // fail fast if the key can't be used
+
+            if (currentKeyId == null)
+            {
+                currentKeyId = keyId;
+            }
+
+            macs.put(keyId, new ThreadLocal<Mac>()
+            {
+                @Override
+                protected Mac initialValue()
+                {
+                    return createMac(secret);
+                }
+            });
+        }
+    }
+
+
+    /**
+     *  Creates a token for the specified user, signed with the current key.
+     */
+    public String create(String userId)
+    {
+        String unsigned = currentKeyId
+                        + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(userId.getBytes(StandardCharsets.UTF_8))
+                        + "." + (System.currentTimeMillis() + lifetime);
+        byte[] signature = sign(macs.get(currentKeyId), unsigned);
+        return unsigned + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+
+    /**
+     *  Validates the passed token, returning the user ID if valid. Returns null if
+     *  the token is null, malformed, signed with an unknown key, has an incorrect
+     *  signature, or has expired.
+     */
+    public String validate(String token)
+    {
+        if (token == null)
+            return null;
+
+        String[] parts = token.split("\\.");
+        if (parts.length != 4)
+            return null;
+
+        ThreadLocal<Mac> mac = macs.get(parts[0]);
+        if (mac == null)
+            return null;
+
+        try
+        {
+            int signatureOffset = token.lastIndexOf('.');
+            byte[] expected = sign(mac, token.substring(0, signatureOffset));
+            byte[] actual = Base64.getUrlDecoder().decode(parts[3]);
+            if (! MessageDigest.isEqual(expected, actual))
+                return null;
+
+            if (Long.parseLong(parts[2]) <= System.currentTimeMillis())
+                return null;
+
+            return new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // thrown by the decoder and by parseLong (NumberFormatException)
+            return null;
+        }
+    }
+
+
+    private static byte[] sign(ThreadLocal<Mac> mac, String value)
+    {
+        return mac.get().doFinal(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private static Mac createMac(SecretKeySpec secret)
+    {
+        try
+        {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secret);
+            return mac;
+        }
+        catch (GeneralSecurityException ex)
+        {
+            throw new IllegalArgumentException("unable to initialize " + ALGORITHM, ex);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.example.cognito.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ *  Computes SHA-256 digests of strings (encoded as UTF-8). Used by the caches that
+ *  key their entries by digest rather than by the value itself.
+ */
+public class Sha256
+{
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+
+    /**
+     *  Returns the raw digest of the passed value.
+     */
+    public static byte[] digest(String value)
+    {
+        try
+        {
+            MessageDigest digester = MessageDigest.getInstance("SHA-256");
+            return digester.digest(value.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // every JVM is required to support SHA-256, so this should never happen
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+
+    /**
+     *  Returns the hex-encoded digest of the passed value.
+     */
+    public static String hexDigest(String value)
+    {
+        byte[] bytes = digest(value);
+        char[] chars = new char[bytes.length * 2];
+        for (int ii = 0 ; ii < bytes.length ; ii++)
+        {
+            chars[ii * 2]     = HEX_DIGITS[(bytes[ii] >> 4) & 0x0F];
+            chars[ii * 2 + 1] = HEX_DIGITS[bytes[ii] & 0x0F];
+        }
+        return new String(chars);
+    }
+}
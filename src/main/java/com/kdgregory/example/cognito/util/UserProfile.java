@@ -0,0 +1,127 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+
+
+/**
+ *  Holds the username and attributes returned by a Cognito <code>GetUser</code> call,
+ *  so that downstream code can find out who the user is without going back to AWS.
+ *  <p>
+ *  Implementation notes:
+ *  <ul>
+ *  <li> Instances are immutable, and are shared between all requests for the same
+ *       user, so there's no need to copy them.
+ *  <li> Attributes are held as parallel arrays rather than a map, because there are
+ *       only a handful of them and a linear scan is faster than hashing at that size.
+ *  <li> Attribute names are interned: every profile has the same small set of names
+ *       ("sub", "email", "email_verified", and any custom attributes), so there's no
+ *       reason for each cached profile to hold its own copy.
+ *  </ul>
+ */
+public class UserProfile
+implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     *  The attribute that holds Cognito's unique (and immutable) user identifier.
+     */
+    public final static String SUB = "sub";
+
+    private String username;
+    private String[] names;
+    private String[] values;
+
+
+    /**
+     *  Creates an instance from the username and attributes returned by Cognito.
+     */
+    public UserProfile(String username, Collection<AttributeType> attributes)
+    {
+        this.username = username;
+        this.names = new String[attributes.size()];
+        this.values = new String[attributes.size()];
+
+        int idx = 0;
+        for (AttributeType attr : attributes)
+        {
+            names[idx] = attr.getName().intern();
+            values[idx] = attr.getValue();
+            idx++;
+        }
+    }
+
+
+    /**
+     *  Returns the user's name, as known to Cognito (for this app, the email address).
+     */
+    public String getUsername()
+    {
+        return username;
+    }
+
+
+    /**
+     *  Returns the user's unique identifier (the "sub" attribute), null if Cognito
+     *  did not provide it.
+     */
+    public String getSub()
+    {
+        return getAttribute(SUB);
+    }
+
+
+    /**
+     *  Returns the value of the named attribute, null if it does not exist.
+     */
+    public String getAttribute(String name)
+    {
+        for (int ii = 0 ; ii < names.length ; ii++)
+        {
+            if (names[ii].equals(name))
+                return values[ii];
+        }
+        return null;
+    }
+
+
+    /**
+     *  Returns all attributes as a map, in the order that Cognito provided them.
+     *  This is a copy: changes do not affect the profile.
+     */
+    public Map<String,String> getAttributes()
+    {
+        Map<String,String> result = new LinkedHashMap<String,String>();
+        for (int ii = 0 ; ii < names.length ; ii++)
+        {
+            result.put(names[ii], values[ii]);
+        }
+        return result;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "UserProfile[" + username + "]";
+    }
+}
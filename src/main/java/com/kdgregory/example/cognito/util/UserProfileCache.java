@@ -0,0 +1,247 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+
+/**
+ *  Holds user profiles retrieved during token validation, so that downstream code
+ *  doesn't need to make its own call to Cognito. Profiles are retrievable either
+ *  by the access token that was validated, or by the user's "sub" attribute.
+ *  <p>
+ *  Like {@link CredentialsCache}, entries expire after 15 minutes (by default),
+ *  at which point the token must be validated again.
+ *  <p>
+ *  Implementation notes:
+ *  <ul>
+ *  <li> Entries are keyed by a SHA-256 digest of the access token, not the token
+ *       itself. Access tokens are over 1k characters; the digest is 64.
+ *  <li> The by-token map is an LRU cache bounded by the number of entries passed to
+ *       the constructor. The by-sub map refers to the most recently added entry for
+ *       a given user, and is purged along with that entry; it will never be larger
+ *       than the by-token map.
+ *  <li> Since two maps must be kept consistent, all methods synchronize on the
+ *       cache instance. Each operation is a few map lookups, so contention should
+ *       be no worse than with <code>CredentialsCache</code>. As with that class,
+ *       each operation records a {@link CacheEvent}; the outcome is determined
+ *       while holding the lock, but the event is committed after releasing it.
+ *  <li> See <code>CredentialsCache</code> for comments about serialization.
+ *  </ul>
+ */
+public class UserProfileCache
+implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final long DEFAULT_TIMEOUT = 15 * 60 * 1000L;
+
+
+    private static final String CACHE_NAME = "UserProfileCache";
+
+    private Map<String,CacheEntry> byToken;
+    private Map<String,CacheEntry> bySub;
+
+    // set by the map when it evicts an entry; only accessed while holding the lock
+    private boolean evicted;
+
+
+    /**
+     *  Creates a new cache, holding up to <code>maxEntries</code> entries.
+     */
+    public UserProfileCache(final int maxEntries)
+    {
+        bySub = new HashMap<String,CacheEntry>();
+        byToken = new LinkedHashMap<String,CacheEntry>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<String,CacheEntry> eldest)
+            {
+                if (size() <= maxEntries)
+                    return false;
+
+                removeFromSubIndex(eldest.getValue());
+                evicted = true;
+                return true;
+            }
+        };
+    }
+
+
+    /**
+     *  Adds a profile to the cache, with default (15 minute) timeout.
+     */
+    public void addProfile(String accessToken, UserProfile profile)
+    {
+        addProfile(accessToken, profile, DEFAULT_TIMEOUT);
+    }
+
+
+    /**
+     *  Adds a profile to the cache, with specified timeout (in millis).
+     */
+    public void addProfile(String accessToken, UserProfile profile, long timeoutMillis)
+    {
+        CacheEntry entry = new CacheEntry(digest(accessToken), profile, System.currentTimeMillis() + timeoutMillis);
+        String sub = profile.getSub();
+
+        CacheEvent event = new CacheEvent(CACHE_NAME, "addProfile");
+        event.begin();
+
+        boolean wasEvicted;
+        synchronized (this)
+        {
+            evicted = false;
+            CacheEntry previous = byToken.put(entry.tokenDigest, entry);
+            if (previous != null)
+            {
+                removeFromSubIndex(previous);
+            }
+
+            if (sub != null)
+            {
+                bySub.put(sub, entry);
+            }
+            wasEvicted = evicted;
+        }
+
+        event.complete(wasEvicted ? CacheEvent.EVICTED : CacheEvent.ADDED);
+    }
+
+
+    /**
+     *  Returns the profile associated with the given access token, null if the token
+     *  is not in the cache or has timed out.
+     */
+    public UserProfile getByToken(String accessToken)
+    {
+        if (accessToken == null)
+            return null;
+
+        String key = digest(accessToken);
+
+        CacheEvent event = new CacheEvent(CACHE_NAME, "getByToken");
+        event.begin();
+
+        String result;
+        UserProfile profile = null;
+        synchronized (this)
+        {
+            CacheEntry entry = byToken.get(key);
+            if (entry == null)
+            {
+                result = CacheEvent.MISS;
+            }
+            else if (System.currentTimeMillis() > entry.expiration)
+            {
+                byToken.remove(key);
+                removeFromSubIndex(entry);
+                result = CacheEvent.EXPIRED;
+            }
+            else
+            {
+                result = CacheEvent.HIT;
+                profile = entry.profile;
+            }
+        }
+
+        event.complete(result);
+        return profile;
+    }
+
+
+    /**
+     *  Returns the profile associated with the given "sub" attribute, null if there
+     *  is no profile or it has timed out.
+     */
+    public UserProfile getBySub(String sub)
+    {
+        CacheEvent event = new CacheEvent(CACHE_NAME, "getBySub");
+        event.begin();
+
+        String result;
+        UserProfile profile = null;
+        synchronized (this)
+        {
+            CacheEntry entry = bySub.get(sub);
+            if (entry == null)
+            {
+                result = CacheEvent.MISS;
+            }
+            else if (System.currentTimeMillis() > entry.expiration)
+            {
+                bySub.remove(sub);
+                byToken.remove(entry.tokenDigest);
+                result = CacheEvent.EXPIRED;
+            }
+            else
+            {
+                result = CacheEvent.HIT;
+                profile = entry.profile;
+            }
+        }
+
+        event.complete(result);
+        return profile;
+    }
+
+
+    /**
+     *  Returns the hex-encoded SHA-256 digest of the passed token. Exposed so that
+     *  other code can use the same key form.
+     */
+    public static String digest(String token)
+    {
+        return Sha256.hexDigest(token);
+    }
+
+
+    /**
+     *  Removes the sub mapping for an entry, but only if that mapping refers to
+     *  the passed entry (the user may have a more recent token).
+     */
+    private void removeFromSubIndex(CacheEntry entry)
+    {
+        String sub = entry.profile.getSub();
+        if ((sub != null) && (bySub.get(sub) == entry))
+        {
+            bySub.remove(sub);
+        }
+    }
+
+
+    private static class CacheEntry
+    implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        public String tokenDigest;
+        public UserProfile profile;
+        public long expiration;
+
+        public CacheEntry(String tokenDigest, UserProfile profile, long expiration)
+        {
+            this.tokenDigest = tokenDigest;
+            this.profile = profile;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.example.cognito.servlets;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestUserPoolRegistry
+{
+    // a base64 encoding of an arbitrary 32-byte value
+    private static final String SESSION_KEY = "k1:AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+
+    /**
+     *  Returns a servlet context with a default pool and two tenants, one of which
+     *  is routed by hostname.
+     */
+    private static Map<String,String> createParams()
+    {
+        Map<String,String> params = new HashMap<String,String>();
+        params.put("cognito_pool_id",               "us-east-1_default");
+        params.put("cognito_client_id",             "defaultclient");
+        params.put("cognito_pools",                 "tenant1, tenant2");
+        params.put("cognito_pool_tenant1_id",       "us-east-1_tenant1");
+        params.put("cognito_pool_tenant1_client_id", "tenant1client");
+        params.put("cognito_pool_tenant1_hosts",    "tenant1.example.com");
+        params.put("cognito_pool_tenant2_id",       "us-west-2_tenant2");
+        params.put("cognito_pool_tenant2_client_id", "tenant2client");
+        return params;
+    }
+
+
+    private static ServletContext createContext(final Map<String,String> params)
+    {
+        return (ServletContext)Proxy.newProxyInstance(
+                ServletContext.class.getClassLoader(),
+                new Class<?>[] { ServletContext.class },
+                new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        if (method.getName().equals("getInitParameter"))
+                            return params.get(args[0]);
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+
+    private static HttpServletRequest createRequest(final String serverName, final String pathInfo)
+    {
+        return (HttpServletRequest)Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        if (method.getName().equals("getServerName"))
+                            return serverName;
+                        if (method.getName().equals("getPathInfo"))
+                            return pathInfo;
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+
+    private static UserPool resolve(UserPoolRegistry registry, String serverName, String pathInfo)
+    {
+        return registry.resolve(createRequest(serverName, pathInfo));
+    }
+
+
+    @Test
+    public void testConfiguration() throws Exception
+    {
+        UserPoolRegistry registry = new UserPoolRegistry(createContext(createParams()));
+        try
+        {
+            UserPool pool = resolve(registry, "tenant1.example.com", null);
+
+            assertEquals("number of pools",         3,                      registry.getPools().size());
+            assertEquals("pool name",               "tenant1",              pool.getName());
+            assertEquals("pool ID",                 "us-east-1_tenant1",    pool.getPoolId());
+            assertEquals("client ID",               "tenant1client",        pool.getClientId());
+        }
+        finally
+        {
+            registry.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testResolvePrecedence() throws Exception
+    {
+        UserPoolRegistry registry = new UserPoolRegistry(createContext(createParams()));
+        try
+        {
+            assertEquals("host beats path",         "tenant1",  resolve(registry, "tenant1.example.com", "/tenant2").getName());
+            assertEquals("host is case-insensitive", "tenant1", resolve(registry, "TENANT1.example.com", null).getName());
+            assertEquals("path",                    "tenant2",  resolve(registry, "www.example.com", "/tenant2").getName());
+            assertEquals("first path segment",      "tenant2",  resolve(registry, "www.example.com", "/tenant2/extra").getName());
+            assertEquals("unknown path",            "default",  resolve(registry, "www.example.com", "/tenant3").getName());
+            assertEquals("root path",               "default",  resolve(registry, "www.example.com", "/").getName());
+            assertEquals("no path",                 "default",  resolve(registry, "www.example.com", null).getName());
+            assertEquals("no host",                 "default",  resolve(registry, null, null).getName());
+        }
+        finally
+        {
+            registry.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testCookieNames() throws Exception
+    {
+        UserPoolRegistry registry = new UserPoolRegistry(createContext(createParams()));
+        try
+        {
+            UserPool defaultPool = resolve(registry, null, null);
+            UserPool tenant1 = resolve(registry, null, "/tenant1");
+            UserPool tenant2 = resolve(registry, null, "/tenant2");
+
+            assertEquals("default pool",    "ACCESS_TOKEN",             defaultPool.cookieName(Constants.CookieNames.ACCESS_TOKEN));
+            assertEquals("tenant1",         "ACCESS_TOKEN_tenant1",     tenant1.cookieName(Constants.CookieNames.ACCESS_TOKEN));
+            assertEquals("tenant2",         "SESSION_tenant2",          tenant2.cookieName(Constants.CookieNames.SESSION));
+        }
+        finally
+        {
+            registry.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testSessionTokensBoundToPool() throws Exception
+    {
+        Map<String,String> params = createParams();
+        params.put("session_keys", SESSION_KEY);
+
+        UserPoolRegistry registry = new UserPoolRegistry(createContext(params));
+        try
+        {
+            UserPool defaultPool = resolve(registry, null, null);
+            UserPool tenant1 = resolve(registry, null, "/tenant1");
+            UserPool tenant2 = resolve(registry, null, "/tenant2");
+
+            String token = tenant1.createSessionToken("1234");
+
+            assertNotNull("token created",                      token);
+            assertEquals("accepted by issuing pool",    "1234", tenant1.validateSessionToken(token));
+            assertNull("rejected by other tenant",              tenant2.validateSessionToken(token));
+            assertNull("rejected by default pool",              defaultPool.validateSessionToken(token));
+            assertNull("default token rejected by tenant",      tenant1.validateSessionToken(defaultPool.createSessionToken("1234")));
+        }
+        finally
+        {
+            registry.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testSessionTokensDisabled() throws Exception
+    {
+        UserPoolRegistry registry = new UserPoolRegistry(createContext(createParams()));
+        try
+        {
+            UserPool pool = resolve(registry, null, null);
+
+            assertNull("no token created",                      pool.createSessionToken("1234"));
+            assertNull("nothing validated",                     pool.validateSessionToken("k1.MTIzNA.0.AAAA"));
+        }
+        finally
+        {
+            registry.shutdown();
+        }
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidPoolName() throws Exception
+    {
+        Map<String,String> params = createParams();
+        params.put("cognito_pools", "tenant1, tenant1");
+        new UserPoolRegistry(createContext(params));
+    }
+}
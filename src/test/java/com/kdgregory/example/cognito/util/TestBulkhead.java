@@ -0,0 +1,128 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestBulkhead
+{
+    @Test
+    public void testSynchronous() throws Exception
+    {
+        Bulkhead bulkhead = new Bulkhead("test", 2, 0, 10);
+
+        assertTrue("first permit",                  bulkhead.enter());
+        assertTrue("second permit",                 bulkhead.enter());
+        assertFalse("third permit rejected",        bulkhead.enter());
+        assertEquals("active count",    2,          bulkhead.getActiveCount());
+        assertEquals("accepted count",  2,          bulkhead.getAcceptedCount());
+        assertEquals("rejected count",  1,          bulkhead.getRejectedCount());
+
+        bulkhead.exit();
+
+        assertTrue("permit available after exit",   bulkhead.enter());
+        assertEquals("active count",    2,          bulkhead.getActiveCount());
+    }
+
+
+    @Test
+    public void testSynchronousQueueTimeout() throws Exception
+    {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, 50);
+
+        assertTrue("first permit",                  bulkhead.enter());
+
+        long start = System.currentTimeMillis();
+        assertFalse("queued caller times out",      bulkhead.enter());
+        assertTrue("waited for timeout",            System.currentTimeMillis() - start >= 40);
+        assertEquals("queue is empty afterward", 0, bulkhead.getQueuedCount());
+        assertEquals("rejected count",  1,          bulkhead.getRejectedCount());
+    }
+
+
+    @Test
+    public void testAsynchronous() throws Exception
+    {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, 10);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        Runnable blocker = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException ignored)
+                {
+                    // test will fail on timeout
+                }
+                done.countDown();
+            }
+        };
+
+        assertTrue("first operation accepted",      bulkhead.execute(blocker));
+        assertTrue("second operation queued",       bulkhead.execute(blocker));
+        assertFalse("third operation rejected",     bulkhead.execute(blocker));
+
+        release.countDown();
+        assertTrue("operations completed",          done.await(1, TimeUnit.SECONDS));
+        assertEquals("accepted count",  2,          bulkhead.getAcceptedCount());
+        assertEquals("rejected count",  1,          bulkhead.getRejectedCount());
+
+        bulkhead.shutdown();
+        assertFalse("rejected after shutdown",      bulkhead.execute(blocker));
+    }
+
+
+    @Test
+    public void testTryEnterDoesNotWait() throws Exception
+    {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, 1000);
+
+        assertTrue("first permit",                  bulkhead.tryEnter());
+
+        long start = System.currentTimeMillis();
+        assertFalse("second permit rejected",       bulkhead.tryEnter());
+        assertTrue("didn't wait for timeout",       System.currentTimeMillis() - start < 500);
+        assertEquals("accepted count",  1,          bulkhead.getAcceptedCount());
+        assertEquals("rejected count",  1,          bulkhead.getRejectedCount());
+    }
+
+
+    @Test
+    public void testRetriesCountedOnce() throws Exception
+    {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 0, 10);
+
+        assertTrue("first attempt",                 bulkhead.tryEnter(false));
+        bulkhead.exit();
+        assertTrue("retry",                         bulkhead.tryEnter(true));
+        assertEquals("accepted after retry", 1,     bulkhead.getAcceptedCount());
+        assertEquals("rejected after retry", 0,     bulkhead.getRejectedCount());
+
+        // bulkhead is full, so the next retry is rejected and moves between counts
+        assertFalse("rejected retry",               bulkhead.tryEnter(true));
+        assertEquals("accepted after rejection", 0, bulkhead.getAcceptedCount());
+        assertEquals("rejected after rejection", 1, bulkhead.getRejectedCount());
+    }
+}
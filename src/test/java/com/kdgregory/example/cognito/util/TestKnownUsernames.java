@@ -0,0 +1,67 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestKnownUsernames
+{
+    @Test
+    public void testBasicOperation() throws Exception
+    {
+        KnownUsernames names = new KnownUsernames();
+        names.add("foo@example.com");
+
+        assertTrue("added name is known",           names.contains("foo@example.com"));
+        assertFalse("other name is not known",      names.contains("bar@example.com"));
+        assertFalse("case is significant",          names.contains("FOO@example.com"));
+        assertFalse("null is not known",            names.contains(null));
+        assertEquals("size",                        1, names.size());
+
+        names.add("foo@example.com");
+        names.add(null);
+        assertEquals("duplicates and null ignored", 1, names.size());
+    }
+
+
+    @Test
+    public void testResize() throws Exception
+    {
+        KnownUsernames names = new KnownUsernames(10);
+        for (int ii = 0 ; ii < 10000 ; ii++)
+        {
+            names.add("user" + ii + "@example.com");
+        }
+
+        assertEquals("size", 10000, names.size());
+        for (int ii = 0 ; ii < 10000 ; ii++)
+        {
+            assertTrue("contains user " + ii, names.contains("user" + ii + "@example.com"));
+        }
+        for (int ii = 10000 ; ii < 20000 ; ii++)
+        {
+            assertFalse("doesn't contain user " + ii, names.contains("user" + ii + "@example.com"));
+        }
+    }
+
+
+    @Test
+    public void testFingerprint() throws Exception
+    {
+        // first 8 bytes of SHA-256("abc") = ba7816bf8f01cfea
+        assertEquals("fingerprint", 0xba7816bf8f01cfeaL, KnownUsernames.fingerprint("abc"));
+    }
+}
@@ -0,0 +1,36 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestLogRateLimiter
+{
+    @Test
+    public void testBasicOperation() throws Exception
+    {
+        LogRateLimiter limiter = new LogRateLimiter(100);
+
+        assertEquals("first message allowed",       0,  limiter.tryAcquire());
+        assertEquals("second message suppressed",   -1, limiter.tryAcquire());
+        assertEquals("third message suppressed",    -1, limiter.tryAcquire());
+
+        Thread.sleep(150);
+
+        assertEquals("allowed after interval, with count of suppressed messages", 2, limiter.tryAcquire());
+        assertEquals("suppressed again",            -1, limiter.tryAcquire());
+    }
+}
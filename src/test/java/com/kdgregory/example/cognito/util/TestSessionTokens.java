@@ -0,0 +1,101 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestSessionTokens
+{
+    // these are base64 encodings of arbitrary 32-byte values
+    private static final String KEY1 = "k1:AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+    private static final String KEY2 = "k2:ICEiIyQlJicoKSorLC0uLzAxMjM0NTY3ODk6Ozw9Pj8=";
+
+
+    @Test
+    public void testBasicOperation() throws Exception
+    {
+        SessionTokens tokens = new SessionTokens(KEY1, 60000);
+        String token = tokens.create("1234-5678");
+
+        assertTrue("token identifies key",      token.startsWith("k1."));
+        assertEquals("validated",               "1234-5678", tokens.validate(token));
+        assertNull("null token",                tokens.validate(null));
+        assertNull("malformed token",           tokens.validate("foo"));
+    }
+
+
+    @Test
+    public void testTampering() throws Exception
+    {
+        SessionTokens tokens = new SessionTokens(KEY1, 60000);
+        String token = tokens.create("1234");
+        String[] parts = token.split("\\.");
+
+        String changedUser = parts[0] + "." + "NTY3OA" + "." + parts[2] + "." + parts[3];
+        assertNull("changed user",              tokens.validate(changedUser));
+
+        String changedExpiry = parts[0] + "." + parts[1] + "." + (Long.parseLong(parts[2]) + 1) + "." + parts[3];
+        assertNull("changed expiry",            tokens.validate(changedExpiry));
+
+        String badExpiry = parts[0] + "." + parts[1] + "." + "foo" + "." + parts[3];
+        assertNull("unparseable expiry",        tokens.validate(badExpiry));
+
+        String badSignature = parts[0] + "." + parts[1] + "." + parts[2] + "." + "!!!";
+        assertNull("unparseable signature",     tokens.validate(badSignature));
+    }
+
+
+    @Test
+    public void testExpiration() throws Exception
+    {
+        SessionTokens tokens = new SessionTokens(KEY1, -1);
+        assertNull("expired",                   tokens.validate(tokens.create("1234")));
+    }
+
+
+    @Test
+    public void testKeyRotation() throws Exception
+    {
+        SessionTokens oldTokens = new SessionTokens(KEY1, 60000);
+        SessionTokens transitionTokens = new SessionTokens(KEY2 + "," + KEY1, 60000);
+        SessionTokens newTokens = new SessionTokens(KEY2, 60000);
+
+        String oldToken = oldTokens.create("1234");
+        String transitionToken = transitionTokens.create("1234");
+
+        assertTrue("new tokens signed with first key",  transitionToken.startsWith("k2."));
+        assertEquals("old token accepted in transition", "1234", transitionTokens.validate(oldToken));
+        assertEquals("new token accepted by new",       "1234", newTokens.validate(transitionToken));
+        assertNull("old token rejected by new",         newTokens.validate(oldToken));
+    }
+
+
+    @Test
+    public void testWrongKeyWithSameId() throws Exception
+    {
+        SessionTokens tokens1 = new SessionTokens(KEY1, 60000);
+        SessionTokens tokens2 = new SessionTokens("k1:" + KEY2.substring(3), 60000);
+
+        assertNull("signature doesn't match",   tokens2.validate(tokens1.create("1234")));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidKeySpec() throws Exception
+    {
+        new SessionTokens("k1", 60000);
+    }
+}
@@ -0,0 +1,45 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.kdgregory.example.cognito.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestSha256
+{
+    @Test
+    public void testHexDigest() throws Exception
+    {
+        // test vectors from FIPS 180-2
+        assertEquals("empty string",
+                     "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                     Sha256.hexDigest(""));
+        assertEquals("abc",
+                     "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                     Sha256.hexDigest("abc"));
+    }
+
+
+    @Test
+    public void testDigestMatchesHex() throws Exception
+    {
+        byte[] digest = Sha256.digest("abc");
+
+        assertEquals("length",          32,     digest.length);
+        assertEquals("first byte",      0xba,   digest[0] & 0xFF);
+        assertEquals("last byte",       0xad,   digest[31] & 0xFF);
+    }
+}
@@ -0,0 +1,108 @@
+// Copyright (c) Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.example.cognito.util;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.amazonaws.services.cognitoidp.model.AttributeType;
+
+public class TestUserProfileCache
+{
+    private static UserProfile createProfile(String username, String sub)
+    {
+        return new UserProfile(username, Arrays.asList(
+                    new AttributeType().withName("sub").withValue(sub),
+                    new AttributeType().withName("email").withValue(username)));
+    }
+
+
+    @Test
+    public void testProfile() throws Exception
+    {
+        UserProfile profile = createProfile("foo@example.com", "1234");
+
+        assertEquals("username",            "foo@example.com",  profile.getUsername());
+        assertEquals("sub",                 "1234",             profile.getSub());
+        assertEquals("email",               "foo@example.com",  profile.getAttribute("email"));
+        assertNull("nonexistent attribute",                     profile.getAttribute("bogus"));
+        assertEquals("attribute map",       2,                  profile.getAttributes().size());
+    }
+
+
+    @Test
+    public void testBasicOperation() throws Exception
+    {
+        UserProfile profile = createProfile("foo@example.com", "1234");
+
+        UserProfileCache cache = new UserProfileCache(10);
+        cache.addProfile("foo", profile);
+
+        assertSame("retrieved by token",            profile, cache.getByToken("foo"));
+        assertSame("retrieved by sub",              profile, cache.getBySub("1234"));
+        assertNull("bogus token was not found",     cache.getByToken("bar"));
+        assertNull("bogus sub was not found",       cache.getBySub("5678"));
+        assertNull("null token was not found",      cache.getByToken(null));
+    }
+
+
+    @Test
+    public void testLRU() throws Exception
+    {
+        UserProfileCache cache = new UserProfileCache(2);
+        cache.addProfile("foo", createProfile("foo@example.com", "1"));
+        cache.addProfile("bar", createProfile("bar@example.com", "2"));
+        cache.getByToken("foo");
+        cache.addProfile("baz", createProfile("baz@example.com", "3"));
+
+        assertNotNull("recently accessed token in cache",   cache.getByToken("foo"));
+        assertNull("least recent token not in cache",       cache.getByToken("bar"));
+        assertNull("least recent sub not in cache",         cache.getBySub("2"));
+        assertNotNull("latest token in cache",              cache.getByToken("baz"));
+    }
+
+
+    @Test
+    public void testMultipleTokensForSameUser() throws Exception
+    {
+        UserProfile profile1 = createProfile("foo@example.com", "1234");
+        UserProfile profile2 = createProfile("foo@example.com", "1234");
+
+        UserProfileCache cache = new UserProfileCache(2);
+        cache.addProfile("foo", profile1);
+        cache.addProfile("bar", profile2);
+
+        assertSame("sub refers to latest profile",  profile2, cache.getBySub("1234"));
+
+        // this evicts the first token, which must not remove the sub mapping for the second
+        cache.addProfile("baz", createProfile("baz@example.com", "5678"));
+
+        assertNull("first token evicted",           cache.getByToken("foo"));
+        assertSame("sub still present",             profile2, cache.getBySub("1234"));
+    }
+
+
+    @Test
+    public void testTimeout() throws Exception
+    {
+        UserProfileCache cache = new UserProfileCache(3);
+        cache.addProfile("foo", createProfile("foo@example.com", "1234"), -1);
+
+        assertNull("sub not in cache",      cache.getBySub("1234"));
+        assertNull("token not in cache",    cache.getByToken("foo"));
+    }
+}